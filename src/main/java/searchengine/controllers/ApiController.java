@@ -23,8 +23,9 @@ public class ApiController {
     }
 
     @GetMapping("/startIndexing")
-    public ResponseEntity<ApiResponse> startIndexing() {
-        return ResponseEntity.ok(indexingService.startIndexing());
+    public ResponseEntity<ApiResponse> startIndexing(
+            @RequestParam(name = "resume", required = false, defaultValue = "false") boolean resume) {
+        return ResponseEntity.ok(indexingService.startIndexing(resume));
     }
 
     @GetMapping("/stopIndexing")
@@ -42,7 +43,8 @@ public class ApiController {
             @RequestParam(name = "query") String query,
             @RequestParam(name = "site", required = false) String site,
             @RequestParam(name = "offset", required = false, defaultValue = "0") int offset,
-            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit) {
-        return ResponseEntity.ok(searchService.search(query, site, offset, limit));
+            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit,
+            @RequestParam(name = "debug", required = false, defaultValue = "false") boolean debug) {
+        return ResponseEntity.ok(searchService.search(query, site, offset, limit, debug));
     }
 }
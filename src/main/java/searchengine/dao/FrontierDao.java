@@ -0,0 +1,73 @@
+package searchengine.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.dto.indexing.FrontierDto;
+import searchengine.model.FrontierRowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class FrontierDao {
+    private final JdbcTemplate connection;
+    private final FrontierRowMapper rowMapper = new FrontierRowMapper();
+
+    public void enqueueAll(List<FrontierDto> entries) {
+        String sql = "INSERT IGNORE INTO frontier(site_id, path, depth, visited) VALUES(?, ?, ?, false)";
+
+        connection.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                FrontierDto entry = entries.get(i);
+
+                ps.setInt(1, entry.getSiteId());
+                ps.setString(2, entry.getPath());
+                ps.setInt(3, entry.getDepth());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    public void markAllVisited(List<FrontierDto> entries) {
+        String sql = "UPDATE frontier SET visited=true WHERE site_id=? AND path=?";
+
+        connection.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                FrontierDto entry = entries.get(i);
+
+                ps.setInt(1, entry.getSiteId());
+                ps.setString(2, entry.getPath());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    public List<FrontierDto> findAllBySiteId(int siteId) {
+        return connection.query("SELECT site_id, path, depth, visited FROM frontier WHERE site_id=" + siteId, rowMapper);
+    }
+
+    public boolean existsBySiteId(int siteId) {
+        String sql = "SELECT EXISTS(SELECT 1 FROM frontier WHERE site_id=" + siteId + ")";
+        return Boolean.TRUE.equals(connection.queryForObject(sql, Boolean.class));
+    }
+
+    public void deleteBySiteId(int siteId) {
+        connection.update("DELETE FROM frontier WHERE site_id=" + siteId);
+    }
+}
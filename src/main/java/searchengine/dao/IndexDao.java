@@ -2,49 +2,144 @@ package searchengine.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import searchengine.dto.indexing.IndexDto;
 import searchengine.model.IndexRowMapper;
+import searchengine.utils.TermPositions;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class IndexDao {
+    @Value("${indexing-settings.index_statement_rows}")
+    private int statementRows;
+
+    @Value("${indexing-settings.index_transaction_rows}")
+    private int transactionRows;
+
     private final JdbcTemplate connection;
     private final IndexRowMapper rowMapper = new IndexRowMapper();
 
     public void saveAll(List<IndexDto> indexes) {
-        String sql = "INSERT INTO search_engine.index(lemma_id, page_id, search_engine.index.rank) VALUES(?, ?, ?)";
-
-        connection.batchUpdate(sql, new BatchPreparedStatementSetter() {
-            @Override
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
-                IndexDto index = indexes.get(i);
+        if (indexes.isEmpty()) return;
 
-                ps.setInt(1, index.getLemmaId());
-                ps.setInt(2, index.getPageId());
-                ps.setDouble(3, index.getRank());
+        connection.execute((ConnectionCallback<Void>) con -> {
+            // inside a caller's transaction the rows are committed or rolled back together with it
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                for (int from = 0; from < indexes.size(); from += statementRows) {
+                    insertRows(con, indexes.subList(from, Math.min(from + statementRows, indexes.size())));
+                }
+                return null;
             }
 
-            @Override
-            public int getBatchSize() {
-                return indexes.size();
+            boolean autoCommit = con.getAutoCommit();
+            boolean committed = false;
+            con.setAutoCommit(false);
+            try {
+                int uncommitted = 0;
+                for (int from = 0; from < indexes.size(); from += statementRows) {
+                    List<IndexDto> rows = indexes.subList(from, Math.min(from + statementRows, indexes.size()));
+                    insertRows(con, rows);
+                    uncommitted += rows.size();
+                    if (uncommitted >= transactionRows) {
+                        con.commit();
+                        uncommitted = 0;
+                    }
+                }
+                con.commit();
+                committed = true;
+            } finally {
+                if (!committed) {
+                    rollbackQuietly(con);
+                }
+                con.setAutoCommit(autoCommit);
             }
+            return null;
         });
     }
 
+    private void rollbackQuietly(Connection con) {
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            log.error("Index rows rollback failed: {}", e.getMessage());
+        }
+    }
+
+    private void insertRows(Connection con, List<IndexDto> rows) throws SQLException {
+        String sql = "INSERT INTO search_engine.index(lemma_id, page_id, search_engine.index.rank, positions) VALUES " +
+                String.join(", ", Collections.nCopies(rows.size(), "(?, ?, ?, ?)"));
+
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            int parameter = 1;
+            for (IndexDto index : rows) {
+                ps.setInt(parameter++, index.getLemmaId());
+                ps.setInt(parameter++, index.getPageId());
+                ps.setDouble(parameter++, index.getRank());
+                ps.setBytes(parameter++, index.getPositions());
+            }
+            ps.executeUpdate();
+        }
+    }
+
     public List<IndexDto> findAllByLemmaIds(List<Integer> lemmaIds) {
         String idsString = lemmaIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
         return connection.query("SELECT * FROM search_engine.index WHERE lemma_id IN (" + idsString + ")", rowMapper);
     }
 
+    public void forEachPosting(RowCallbackHandler handler) {
+        String sql = "SELECT lemma.lemma, lemma.site_id, search_engine.index.page_id, search_engine.index.rank " +
+                "FROM search_engine.index JOIN lemma ON lemma.id = search_engine.index.lemma_id";
+        connection.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            return ps;
+        }, handler);
+    }
+
+    public Map<Integer, Map<String, TermPositions>> findPositions(List<Integer> pageIds, List<String> lemmas) {
+        String pageIdsString = pageIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
+        String sql = "SELECT lemma.lemma, search_engine.index.page_id, search_engine.index.positions " +
+                "FROM search_engine.index JOIN lemma ON lemma.id = search_engine.index.lemma_id " +
+                "WHERE search_engine.index.page_id IN (" + pageIdsString + ") " +
+                "AND lemma.lemma IN ('" + String.join("', '", lemmas) + "')";
+
+        Map<Integer, Map<String, TermPositions>> pageIdToPositions = new HashMap<>();
+        connection.query(sql, (RowCallbackHandler) rs -> pageIdToPositions
+                .computeIfAbsent(rs.getInt("page_id"), pageId -> new HashMap<>())
+                .put(rs.getString("lemma"), TermPositions.decode(rs.getBytes("positions"))));
+        return pageIdToPositions;
+    }
+
+    public List<String> findLemmasByPageIds(List<Integer> pageIds) {
+        String idsString = pageIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
+        String sql = "SELECT lemma.lemma FROM search_engine.index " +
+                "JOIN lemma ON lemma.id = search_engine.index.lemma_id WHERE page_id IN (" + idsString + ")";
+        return connection.queryForList(sql, String.class);
+    }
+
+    public int deleteBySiteIdAndPageIdRange(int siteId, int fromPageId, int toPageId) {
+        String sql = "DELETE search_engine.index FROM search_engine.index " +
+                "JOIN page ON page.id = search_engine.index.page_id WHERE page.site_id=" + siteId +
+                " AND page.id BETWEEN " + fromPageId + " AND " + toPageId;
+        return connection.update(sql);
+    }
+
     public void deleteAllByPageId(List<Integer> pageIds) {
         String idsString = pageIds.stream()
                 .map(String::valueOf)
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 import searchengine.dto.indexing.LemmaDto;
 import searchengine.model.LemmaRowMapper;
@@ -26,16 +27,14 @@ public class LemmaDao {
         return connection.query(sql, rowMapper);
     }
 
-    public void updateAll(List<LemmaDto> lemmas) {
-        String updateSql = "UPDATE lemma SET lemma.frequency=? WHERE lemma.lemma=?";
+    public void insertMissing(List<String> lemmas, int siteId) {
+        String sql = "INSERT IGNORE INTO lemma(lemma, site_id, frequency) VALUES(?, ?, 0)";
 
-        connection.batchUpdate(updateSql, new BatchPreparedStatementSetter() {
+        connection.batchUpdate(sql, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
-                LemmaDto lemma = lemmas.get(i);
-
-                ps.setInt(1, lemma.getFrequency());
-                ps.setString(2, lemma.getLemma());
+                ps.setString(1, lemmas.get(i));
+                ps.setInt(2, siteId);
             }
 
             @Override
@@ -45,8 +44,9 @@ public class LemmaDao {
         });
     }
 
-    public void saveAll(List<LemmaDto> lemmas) {
-        String sql = "INSERT INTO lemma(lemma, site_id, frequency) VALUES(?, ?, ?)";
+    public void addFrequencies(List<LemmaDto> lemmas) {
+        String sql = "INSERT INTO lemma(lemma, site_id, frequency) VALUES(?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
 
         connection.batchUpdate(sql, new BatchPreparedStatementSetter() {
             @Override
@@ -65,6 +65,10 @@ public class LemmaDao {
         });
     }
 
+    public void forEachLemmaOfSite(int siteId, RowCallbackHandler handler) {
+        connection.query("SELECT id, lemma FROM lemma WHERE site_id=" + siteId, handler);
+    }
+
     public int getAllLemmasCount() {
         return connection.queryForObject("SELECT COUNT(*) FROM lemma", Integer.class);
     }
@@ -84,4 +88,24 @@ public class LemmaDao {
         String sql = "DELETE FROM lemma WHERE site_id=" + siteId;
         connection.update(sql);
     }
+
+    public List<String> deleteUnused(List<String> lemmas, int siteId) {
+        if (lemmas.isEmpty()) return List.of();
+
+        String lemmasString = "('" + String.join("', '", lemmas) + "')";
+        List<String> unused = connection.queryForList("SELECT lemma FROM lemma WHERE site_id=" + siteId +
+                " AND frequency <= 0 AND lemma IN " + lemmasString + " AND NOT EXISTS " +
+                "(SELECT 1 FROM search_engine.index WHERE search_engine.index.lemma_id = lemma.id) FOR UPDATE",
+                String.class);
+        if (!unused.isEmpty()) {
+            connection.update("DELETE FROM lemma WHERE site_id=" + siteId +
+                    " AND lemma IN ('" + String.join("', '", unused) + "')");
+        }
+        return unused;
+    }
+
+    public int deleteBySiteId(int siteId, int limit) {
+        String sql = "DELETE FROM lemma WHERE site_id=" + siteId + " LIMIT " + limit;
+        return connection.update(sql);
+    }
 }
@@ -3,16 +3,21 @@ package searchengine.dao;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import searchengine.dto.indexing.PageDto;
 import searchengine.model.PageRowMapper;
+import searchengine.utils.ContentCodec;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -25,14 +30,8 @@ public class PageDao {
     private final JdbcTemplate connection;
     private final PageRowMapper rowMapper = new PageRowMapper();
 
-    public List<PageDto> fetch(int limit, int offset) {
-        String sql = "SELECT * FROM page LIMIT " + limit + " OFFSET " + offset;
-
-        return connection.query(sql, rowMapper);
-    }
-
     public Optional<PageDto> findBySiteIdAndPath(int siteId, String path) {
-        String sql = "SELECT * FROM page WHERE site_id=" + siteId + " AND path='" + path + "'";
+        String sql = "SELECT id, site_id, path FROM page WHERE site_id=" + siteId + " AND path='" + path + "'";
 
         return connection.query(sql, rowMapper).stream().findAny();
     }
@@ -46,13 +45,20 @@ public class PageDao {
         connection.update(
                 con -> {
                     PreparedStatement ps = con.prepareStatement(
-                            "INSERT INTO page (code, content, path, site_id) VALUES (?, ?, ?, ?)",
+                            "INSERT INTO page (code, content, path, site_id, title, text, etag, last_modified, " +
+                                    "content_hash, length) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
                             Statement.RETURN_GENERATED_KEYS);
 
                     ps.setInt(1, page.getCode());
-                    ps.setString(2, page.getContent());
+                    ps.setBytes(2, page.getCompressedContent());
                     ps.setString(3, page.getPath());
                     ps.setInt(4, page.getSiteId());
+                    ps.setString(5, page.getTitle());
+                    ps.setString(6, page.getText());
+                    ps.setString(7, page.getEtag());
+                    ps.setString(8, page.getLastModified());
+                    ps.setString(9, page.getContentHash());
+                    ps.setObject(10, page.getLength(), Types.INTEGER);
 
                     return ps;
                 },
@@ -64,18 +70,72 @@ public class PageDao {
         return page;
     }
 
+    public void update(PageDto page) {
+        connection.update("UPDATE page SET code=?, content=?, title=?, text=?, length=?, etag=?, last_modified=?, " +
+                        "content_hash=? WHERE id=?",
+                page.getCode(), page.getCompressedContent(), page.getTitle(), page.getText(), page.getLength(),
+                page.getEtag(), page.getLastModified(), page.getContentHash(), page.getId());
+    }
+
     public void saveAll(List<PageDto> pages) {
-        String sql = "INSERT INTO page(code, content, path, site_id) VALUES(?, ?, ?, ?)";
+        String sql = "INSERT INTO page(code, content, path, site_id, title, text, etag, last_modified, content_hash) " +
+                "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        connection.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (PageDto item : pages) {
+                    ps.setInt(1, item.getCode());
+                    ps.setBytes(2, item.getCompressedContent());
+                    ps.setString(3, item.getPath());
+                    ps.setInt(4, item.getSiteId());
+                    ps.setString(5, item.getTitle());
+                    ps.setString(6, item.getText());
+                    ps.setString(7, item.getEtag());
+                    ps.setString(8, item.getLastModified());
+                    ps.setString(9, item.getContentHash());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next()) {
+                        pages.get(i++).setId(keys.getInt(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    public int getAllPagesCount() {
+        return connection.queryForObject("SELECT COUNT(*) FROM page", Integer.class);
+    }
+
+    public int getSitePagesCount(int siteId) {
+        return connection.queryForObject("SELECT COUNT(*) FROM page WHERE site_id=" + siteId, Integer.class);
+    }
+
+    public List<PageDto> findAllSummariesById(List<Integer> pageIds) {
+        String idsString = pageIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
+        String sql = "SELECT id, site_id, path, title, text FROM page WHERE id IN (" + idsString + ")";
+        return connection.query(sql, rowMapper);
+    }
+
+    public void forEachIndexedPage(RowCallbackHandler handler) {
+        connection.query("SELECT id, site_id, length FROM page WHERE length IS NOT NULL", handler);
+    }
+
+    public void updateLengths(List<PageDto> pages) {
+        String sql = "UPDATE page SET length=? WHERE id=?";
 
         connection.batchUpdate(sql, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
-                PageDto item = pages.get(i);
+                PageDto page = pages.get(i);
 
-                ps.setInt(1, item.getCode());
-                ps.setString(2, item.getContent());
-                ps.setString(3, item.getPath());
-                ps.setInt(4, item.getSiteId());
+                ps.setInt(1, page.getLength());
+                ps.setInt(2, page.getId());
             }
 
             @Override
@@ -85,23 +145,30 @@ public class PageDao {
         });
     }
 
-    public int getAllPagesCount() {
-        return connection.queryForObject("SELECT COUNT(*) FROM page", Integer.class);
+    public List<PageDto> findValidatorsBySiteId(int siteId) {
+        String sql = "SELECT id, site_id, path, etag, last_modified, content_hash FROM page WHERE site_id=" + siteId;
+        return connection.query(sql, rowMapper);
     }
 
-    public int getSitePagesCount(int siteId) {
-        return connection.queryForObject("SELECT COUNT(*) FROM page WHERE site_id=" + siteId, Integer.class);
+    public Optional<String> findContentById(int pageId) {
+        String sql = "SELECT content FROM page WHERE id=" + pageId;
+        return connection.queryForList(sql, byte[].class).stream().findAny().map(ContentCodec::decompress);
     }
 
-    public List<PageDto> findAllById(List<Integer> pageIds) {
-        String idsString = pageIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
-        String sql = "SELECT * FROM page WHERE id IN (" + idsString + ")";
-        return connection.query(sql, rowMapper);
+    public void updateValidators(PageDto page) {
+        connection.update("UPDATE page SET etag=?, last_modified=? WHERE id=?",
+                page.getEtag(), page.getLastModified(), page.getId());
     }
 
-    public List<PageDto> findBySiteId(int siteId) {
-        String sql = "SELECT * FROM page WHERE site_id=" + siteId;
-        return connection.query(sql, rowMapper);
+    public Optional<Integer> findChunkUpperId(int siteId, int afterId, int limit) {
+        String sql = "SELECT MAX(id) FROM (SELECT id FROM page WHERE site_id=" + siteId + " AND id>" + afterId +
+                " ORDER BY id LIMIT " + limit + ") AS chunk";
+        return Optional.ofNullable(connection.queryForObject(sql, Integer.class));
+    }
+
+    public int deleteBySiteIdAndIdRange(int siteId, int fromId, int toId) {
+        return connection.update("DELETE FROM page WHERE site_id=" + siteId +
+                " AND id BETWEEN " + fromId + " AND " + toId);
     }
 
     public void deleteAllById(List<Integer> pageIds) {
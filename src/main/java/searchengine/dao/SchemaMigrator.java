@@ -0,0 +1,77 @@
+package searchengine.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SchemaMigrator {
+    private static final String SCRIPTS = "classpath:db/migration/V*__*.sql";
+    private static final Pattern VERSION = Pattern.compile("^V(\\d+)__");
+    private static final Pattern COMMENT = Pattern.compile("^\\s*--.*$", Pattern.MULTILINE);
+    // duplicate column and duplicate key name: the change is already in a schema that hibernate used to update
+    private static final Set<Integer> ALREADY_APPLIED_ERRORS = Set.of(1060, 1061);
+
+    private final JdbcTemplate connection;
+
+    @PostConstruct
+    public void migrate() throws IOException {
+        connection.execute("CREATE TABLE IF NOT EXISTS schema_version(version INT NOT NULL, script VARCHAR(255) NOT NULL, " +
+                "applied_at DATETIME NOT NULL, PRIMARY KEY (version))");
+        Set<Integer> applied = new HashSet<>(connection.queryForList("SELECT version FROM schema_version", Integer.class));
+
+        TreeMap<Integer, Resource> versionToScript = new TreeMap<>();
+        for (Resource script : new PathMatchingResourcePatternResolver().getResources(SCRIPTS)) {
+            Matcher matcher = VERSION.matcher(Objects.requireNonNull(script.getFilename()));
+            if (matcher.find()) {
+                versionToScript.put(Integer.parseInt(matcher.group(1)), script);
+            }
+        }
+
+        for (Map.Entry<Integer, Resource> entry : versionToScript.entrySet()) {
+            if (applied.contains(entry.getKey())) continue;
+
+            apply(entry.getValue());
+            connection.update("INSERT INTO schema_version(version, script, applied_at) VALUES(?, ?, ?)",
+                    entry.getKey(), entry.getValue().getFilename(), Timestamp.valueOf(LocalDateTime.now()));
+            log.info("Schema migrated to version {} ({})", entry.getKey(), entry.getValue().getFilename());
+        }
+    }
+
+    private void apply(Resource script) throws IOException {
+        String sql;
+        try (InputStream in = script.getInputStream()) {
+            sql = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+        List<String> statements = Arrays.stream(COMMENT.matcher(sql).replaceAll("").split(";"))
+                .map(String::strip).filter(statement -> !statement.isEmpty()).toList();
+
+        for (String statement : statements) {
+            try {
+                connection.execute(statement);
+            } catch (DataAccessException e) {
+                if (!(e.getMostSpecificCause() instanceof SQLException sqlException)
+                        || !ALREADY_APPLIED_ERRORS.contains(sqlException.getErrorCode())) throw e;
+                log.info("Skipped already applied statement: {}", statement);
+            }
+        }
+    }
+}
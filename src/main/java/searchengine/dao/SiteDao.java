@@ -25,10 +25,7 @@ public class SiteDao {
     private final SiteRowMapper rowMapper = new SiteRowMapper();
 
     public SiteDto save(SiteDto site) {
-        Optional<SiteDto> existingSite = findByUrl(site.getUrl());
-        if (existingSite.isPresent()) {
-            site.setId(existingSite.get().getId());
-
+        if (site.getId() != null) {
             connection.update(con -> {
                 PreparedStatement ps = con.prepareStatement(
                         "UPDATE site SET status=?, status_time=?, last_error=? WHERE id=?");
@@ -45,7 +42,8 @@ public class SiteDao {
 
             connection.update(con -> {
                         PreparedStatement ps = con.prepareStatement(
-                                "INSERT INTO site (name, url, last_error, status, status_time) VALUES (?, ?, ?, ?, ?)",
+                                "INSERT INTO site (name, url, last_error, status, status_time, active) " +
+                                        "VALUES (?, ?, ?, ?, ?, ?)",
                                 Statement.RETURN_GENERATED_KEYS);
 
                         ps.setString(1, site.getName());
@@ -53,6 +51,7 @@ public class SiteDao {
                         ps.setString(3, site.getLastError());
                         ps.setString(4, site.getStatus());
                         ps.setTimestamp(5, site.getStatusTime());
+                        ps.setBoolean(6, site.getActive() == null || site.getActive());
 
                         return ps;
                     },
@@ -65,13 +64,34 @@ public class SiteDao {
     }
 
     public Optional<SiteDto> findByUrl(String url) {
-        String sql = "SELECT * FROM site WHERE url='" + url + "'";
+        String sql = "SELECT * FROM site WHERE url='" + url + "' AND active";
+
+        return connection.query(sql, rowMapper).stream().findAny();
+    }
+
+    public Optional<SiteDto> findLatestByUrl(String url) {
+        String sql = "SELECT * FROM site WHERE url='" + url + "' ORDER BY id DESC LIMIT 1";
 
         return connection.query(sql, rowMapper).stream().findAny();
     }
 
-    public void delete(SiteDto site) {
-        connection.update("DELETE FROM site WHERE id=" + site.getId());
+    public List<SiteDto> findAllInactive() {
+        return connection.query("SELECT * FROM site WHERE NOT active", rowMapper);
+    }
+
+    public List<SiteDto> findAllSuspended() {
+        String sql = "SELECT * FROM site s WHERE NOT s.active AND s.status <> '" + Status.INDEXED + "' " +
+                "AND s.id = (SELECT MAX(id) FROM site WHERE url = s.url) " +
+                "AND EXISTS (SELECT 1 FROM frontier WHERE site_id = s.id)";
+        return connection.query(sql, rowMapper);
+    }
+
+    public void activate(SiteDto site) {
+        connection.update("UPDATE site SET active = (id=" + site.getId() + ") WHERE url='" + site.getUrl() + "'");
+    }
+
+    public void delete(int siteId) {
+        connection.update("DELETE FROM site WHERE id=" + siteId);
     }
 
     public List<SiteDto> findAllByStatus(Status status) {
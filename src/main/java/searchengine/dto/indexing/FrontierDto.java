@@ -0,0 +1,11 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+@Data
+public class FrontierDto {
+    private Integer siteId;
+    private String path;
+    private Integer depth;
+    private Boolean visited;
+}
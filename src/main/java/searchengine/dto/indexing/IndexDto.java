@@ -8,4 +8,5 @@ public class IndexDto {
     private Double rank;
     private Integer lemmaId;
     private Integer pageId;
+    private byte[] positions;
 }
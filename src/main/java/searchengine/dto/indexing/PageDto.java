@@ -1,6 +1,7 @@
 package searchengine.dto.indexing;
 
 import lombok.Data;
+import searchengine.utils.ContentCodec;
 
 @Data
 public class PageDto {
@@ -9,6 +10,37 @@ public class PageDto {
     private String path;
     private Integer code;
     private String content;
+    private byte[] compressedContent;
+    private String title;
+    private String text;
+    private Integer length;
+    private String etag;
+    private String lastModified;
+    private String contentHash;
+
+    public String getContent() {
+        if (content == null && compressedContent != null) {
+            content = ContentCodec.decompress(compressedContent);
+        }
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+        this.compressedContent = null;
+    }
+
+    public byte[] getCompressedContent() {
+        if (compressedContent == null && content != null) {
+            compressedContent = ContentCodec.compress(content);
+        }
+        return compressedContent;
+    }
+
+    public void setCompressedContent(byte[] compressedContent) {
+        this.compressedContent = compressedContent;
+        this.content = null;
+    }
 
     @Override
     public String toString() {
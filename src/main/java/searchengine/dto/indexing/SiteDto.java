@@ -12,4 +12,5 @@ public class SiteDto {
     private String name;
     private Timestamp statusTime;
     private String lastError;
+    private Boolean active;
 }
@@ -0,0 +1,16 @@
+package searchengine.dto.search;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class QueryPlan {
+    private int siteId;
+    private int documents;
+    private List<String> lemmas;
+    private List<String> droppedLemmas;
+    private Map<String, Double> lemmaRatios;
+    private long estimatedCost;
+}
@@ -0,0 +1,16 @@
+package searchengine.dto.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@RequiredArgsConstructor
+public class SearchQuery {
+    private final List<String> lemmas;
+    private final Map<String, Integer> documentFrequencies;
+    private final int documentCount;
+    private final double averageLength;
+}
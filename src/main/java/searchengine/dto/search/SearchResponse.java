@@ -1,5 +1,6 @@
 package searchengine.dto.search;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.Setter;
 import searchengine.dto.ApiResponse;
@@ -11,4 +12,7 @@ import java.util.List;
 public class SearchResponse extends ApiResponse {
     private int count = 0;
     private List<SearchData> data;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<QueryPlan> debug;
 }
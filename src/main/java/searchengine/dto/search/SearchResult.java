@@ -0,0 +1,21 @@
+package searchengine.dto.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class SearchResult {
+    public static final SearchResult EMPTY = new SearchResult(0, new int[0], new double[0], List.of());
+
+    private final int count;
+    private final int[] pageIds;
+    private final double[] scores;
+    private final List<QueryPlan> plans;
+
+    public boolean covers(int depth) {
+        return pageIds.length >= depth || pageIds.length == count;
+    }
+}
@@ -0,0 +1,12 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class CacheStatistics {
+    private long hits;
+    private long misses;
+    private long evictions;
+    private int entries;
+    private long bytes;
+}
@@ -0,0 +1,13 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class PurgeStatistics {
+    private int siteId;
+    private String status;
+    private int totalPages;
+    private int deletedPages;
+    private int deletedLemmas;
+    private long startTime;
+}
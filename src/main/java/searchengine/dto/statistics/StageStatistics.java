@@ -0,0 +1,13 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class StageStatistics {
+    private String name;
+    private int threads;
+    private int queueSize;
+    private int queueCapacity;
+    private long processed;
+    private double throughput;
+}
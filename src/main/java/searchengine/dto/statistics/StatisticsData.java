@@ -8,4 +8,7 @@ import java.util.List;
 public class StatisticsData {
     private TotalStatistics total;
     private List<DetailedStatisticsItem> detailed;
+    private CacheStatistics cache;
+    private List<StageStatistics> pipeline;
+    private List<PurgeStatistics> purges;
 }
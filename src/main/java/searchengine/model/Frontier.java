@@ -0,0 +1,31 @@
+package searchengine.model;
+
+import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+
+@Data
+@Entity
+@Table(name = "frontier", uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "path"}))
+public class Frontier {
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "site_id", referencedColumnName = "id", nullable = false)
+    private Site site;
+
+    @Column(name = "path", columnDefinition = "varchar(255)", nullable = false)
+    private String path;
+
+    @Column(name = "depth", nullable = false)
+    private int depth;
+
+    @Column(name = "visited", nullable = false)
+    private boolean visited;
+}
@@ -0,0 +1,21 @@
+package searchengine.model;
+
+import org.springframework.jdbc.core.RowMapper;
+import searchengine.dto.indexing.FrontierDto;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class FrontierRowMapper implements RowMapper<FrontierDto> {
+    @Override
+    public FrontierDto mapRow(ResultSet rs, int rowNum) throws SQLException {
+        FrontierDto entry = new FrontierDto();
+
+        entry.setSiteId(rs.getInt("site_id"));
+        entry.setPath(rs.getString("path"));
+        entry.setDepth(rs.getInt("depth"));
+        entry.setVisited(rs.getBoolean("visited"));
+
+        return entry;
+    }
+}
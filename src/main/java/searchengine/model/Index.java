@@ -26,4 +26,7 @@ public class Index {
 
     @Column(name = "`rank`", columnDefinition = "float", nullable = false)
     private double rank;
+
+    @Column(name = "positions", columnDefinition = "mediumblob")
+    private byte[] positions;
 }
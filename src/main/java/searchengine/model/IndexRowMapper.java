@@ -15,6 +15,7 @@ public class IndexRowMapper implements RowMapper<IndexDto> {
         index.setPageId(rs.getInt("page_id"));
         index.setLemmaId(rs.getInt("lemma_id"));
         index.setRank(rs.getDouble("rank"));
+        index.setPositions(rs.getBytes("positions"));
 
         return index;
     }
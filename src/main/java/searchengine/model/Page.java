@@ -26,6 +26,24 @@ public class Page {
     @Column(name = "code", nullable = false)
     private int code;
 
-    @Column(name = "content", columnDefinition = "mediumtext", nullable = false)
-    private String content;
+    @Column(name = "content", columnDefinition = "mediumblob", nullable = false)
+    private byte[] content;
+
+    @Column(name = "title", columnDefinition = "text")
+    private String title;
+
+    @Column(name = "text", columnDefinition = "mediumtext")
+    private String text;
+
+    @Column(name = "length")
+    private Integer length;
+
+    @Column(name = "etag", columnDefinition = "varchar(255)")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "varchar(64)")
+    private String lastModified;
+
+    @Column(name = "content_hash", columnDefinition = "char(64)")
+    private String contentHash;
 }
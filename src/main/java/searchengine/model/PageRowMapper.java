@@ -4,6 +4,7 @@ import org.springframework.jdbc.core.RowMapper;
 import searchengine.dto.indexing.PageDto;
 
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 
 public class PageRowMapper implements RowMapper<PageDto> {
@@ -12,11 +13,25 @@ public class PageRowMapper implements RowMapper<PageDto> {
         PageDto page = new PageDto();
 
         page.setId(rs.getInt("id"));
-        page.setCode(rs.getInt("code"));
         page.setSiteId(rs.getInt("site_id"));
-        page.setPath(rs.getString("path"));
-        page.setContent(rs.getString("content"));
+        if (hasColumn(rs, "code")) page.setCode(rs.getInt("code"));
+        if (hasColumn(rs, "path")) page.setPath(rs.getString("path"));
+        if (hasColumn(rs, "content")) page.setCompressedContent(rs.getBytes("content"));
+        if (hasColumn(rs, "title")) page.setTitle(rs.getString("title"));
+        if (hasColumn(rs, "text")) page.setText(rs.getString("text"));
+        if (hasColumn(rs, "length")) page.setLength(rs.getInt("length"));
+        if (hasColumn(rs, "etag")) page.setEtag(rs.getString("etag"));
+        if (hasColumn(rs, "last_modified")) page.setLastModified(rs.getString("last_modified"));
+        if (hasColumn(rs, "content_hash")) page.setContentHash(rs.getString("content_hash"));
 
         return page;
     }
+
+    private boolean hasColumn(ResultSet rs, String column) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (metaData.getColumnLabel(i).equalsIgnoreCase(column)) return true;
+        }
+        return false;
+    }
 }
@@ -29,4 +29,7 @@ public class Site {
 
     @Column(name = "name", columnDefinition = "varchar(255)", nullable = false)
     private String name;
+
+    @Column(name = "active", nullable = false)
+    private boolean active;
 }
@@ -17,6 +17,7 @@ public class SiteRowMapper implements RowMapper<SiteDto> {
         site.setStatus(rs.getString("status"));
         site.setLastError(rs.getString("last_error"));
         site.setStatusTime(rs.getTimestamp("status_time"));
+        site.setActive(rs.getBoolean("active"));
 
         return site;
     }
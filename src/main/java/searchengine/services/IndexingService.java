@@ -3,7 +3,7 @@ package searchengine.services;
 import searchengine.dto.ApiResponse;
 
 public interface IndexingService {
-    ApiResponse startIndexing();
+    ApiResponse startIndexing(boolean resume);
 
     ApiResponse stopIndexing();
 
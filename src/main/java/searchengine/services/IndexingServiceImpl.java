@@ -2,17 +2,18 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import searchengine.config.SiteConfig;
 import searchengine.config.SitesList;
-import searchengine.dao.IndexDao;
-import searchengine.dao.LemmaDao;
 import searchengine.dao.PageDao;
 import searchengine.dao.SiteDao;
 import searchengine.dto.ApiResponse;
 import searchengine.dto.ErrorResponse;
+import searchengine.dto.indexing.FrontierDto;
 import searchengine.dto.indexing.IndexingResponse;
 import searchengine.dto.indexing.PageDto;
 import searchengine.dto.indexing.SiteDto;
@@ -23,10 +24,13 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,45 +39,83 @@ import java.util.regex.Pattern;
 @RequiredArgsConstructor
 public class IndexingServiceImpl implements IndexingService{
 
+    @Value("${indexing-settings.incremental_recrawl}")
+    private boolean incrementalRecrawl;
+
+    @Value("${indexing-settings.visited_expected_size}")
+    private int visitedExpectedSize;
+
+    @Value("${indexing-settings.visited_bloom_filter}")
+    private boolean visitedBloomFilter;
+
     private final SitesList sitesList;
     private final SiteDao siteDao;
     private final ApplicationContext context;
     private final IndexingTasksManager tasksManager;
     private final HtmlParser parser;
+    private final PageFetcher fetcher;
     private final PageDao pageDao;
-    private final BatchProcessor batch;
-    private final IndexDao indexDao;
-    private final LemmaDao lemmaDao;
+    private final IndexingPipeline pipeline;
+    private final SiteGenerations siteGenerations;
+    private final IndexProcessor indexProcessor;
+    private final CrawlFrontier crawlFrontier;
 
     @Override
-    public ApiResponse startIndexing() {
+    public ApiResponse startIndexing(boolean resume) {
         if (tasksManager.isRunning()) {
             return new ErrorResponse("Индексация уже запущена");
         }
+        if (tasksManager.isStopping()) {
+            return new ErrorResponse("Предыдущая индексация ещё завершается");
+        }
 
         tasksManager.initialize();
-        batch.setPagesOffset(0);
+        pipeline.resetStatistics();
 
+        List<SiteCrawler> roots = new ArrayList<>();
         for (SiteConfig siteConfig : sitesList.getSites()) {
-            siteDao.findByUrl(siteConfig.getUrl()).ifPresent(site -> deleteAllSiteData(site.getId()));
-
-            SiteDto site = new SiteDto();
-            site.setName(siteConfig.getName());
-            site.setUrl(siteConfig.getUrl());
-            site.setStatus(Status.INDEXING.toString());
-            site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
-            site = siteDao.save(site);
+            Optional<SiteDto> suspendedSite = resume
+                    ? siteGenerations.findSuspended(siteConfig.getUrl())
+                    : Optional.empty();
+            if (suspendedSite.isPresent()) {
+                roots.add(buildResumedCrawler(siteGenerations.resume(suspendedSite.get())));
+                continue;
+            }
+            siteGenerations.discardSuspended(siteConfig.getUrl());
+
+            Optional<SiteDto> indexedSite = siteDao.findByUrl(siteConfig.getUrl())
+                    .filter(site -> Status.INDEXED.toString().equals(site.getStatus()));
+
+            SiteDto site;
+            Map<String, PageDto> knownPages = null;
+            if (incrementalRecrawl && indexedSite.isPresent()) {
+                site = indexedSite.get();
+                site.setStatus(Status.INDEXING.toString());
+                site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
+                site.setLastError(null);
+                site = siteDao.save(site);
+
+                knownPages = new ConcurrentHashMap<>();
+                for (PageDto page : pageDao.findValidatorsBySiteId(site.getId())) {
+                    knownPages.put(page.getPath(), page);
+                }
+            } else {
+                site = siteGenerations.createGeneration(siteConfig);
+            }
 
             SiteCrawler crawler = context.getBean(SiteCrawler.class);
             String path = "/";
-            Set<String> visited = new HashSet<>();
+            VisitedSet visited = newVisitedSet(knownPages == null ? 0 : knownPages.size());
             visited.add(path);
+            crawlFrontier.enqueue(site.getId(), List.of(path), 0);
             crawler.setSourcePath(path);
+            crawler.setRoot(true);
             crawler.setVisited(visited);
+            crawler.setKnownPages(knownPages);
             crawler.setSite(site);
-            tasksManager.submitTask(crawler);
+            roots.add(crawler);
         }
-        new Thread(tasksManager).start();
+        tasksManager.startSites(roots);
 
         IndexingResponse response = new IndexingResponse();
         response.setResult(true);
@@ -87,6 +129,7 @@ public class IndexingServiceImpl implements IndexingService{
         }
 
         tasksManager.abort();
+        pipeline.clear();
 
         IndexingResponse response = new IndexingResponse();
         response.setResult(true);
@@ -115,15 +158,9 @@ public class IndexingServiceImpl implements IndexingService{
 
         int siteId = site.getId();
         String path = url.substring(rootUrl.length());
-        pageDao.findBySiteIdAndPath(siteId, path).ifPresent(page -> {
-            indexDao.deleteAllByPageId(List.of(page.getId()));
-            lemmaDao.deleteBySiteId(page.getSiteId());
-            pageDao.delete(page);
-        });
-
         ResponseEntity<String> pageResponse;
         try {
-            pageResponse = parser.getResponse(url);
+            pageResponse = fetcher.fetch(url);
         } catch (Exception e) {
             return new ErrorResponse(e.getLocalizedMessage());
         }
@@ -132,23 +169,61 @@ public class IndexingServiceImpl implements IndexingService{
         page.setPath(path);
         page.setCode(pageResponse.getStatusCodeValue());
         page.setContent(pageResponse.getBody());
-        page = pageDao.save(page);
+        ParsedPage parsedPage = parser.parse(pageResponse.getBody());
+        page.setTitle(parsedPage.getTitle());
+        page.setText(parsedPage.getText());
+        page.setEtag(pageResponse.getHeaders().getETag());
+        page.setLastModified(pageResponse.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED));
+        page.setContentHash(parser.getContentHash(pageResponse.getBody()));
+        pageDao.findBySiteIdAndPath(siteId, path).ifPresent(existingPage -> page.setId(existingPage.getId()));
 
-        IndexProcessor indexProcessor = context.getBean(IndexProcessor.class);
-        indexProcessor.setPages(List.of(page));
-        indexProcessor.start();
+        try {
+            indexProcessor.indexPage(page);
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return new ErrorResponse(e.getLocalizedMessage());
+        }
 
         IndexingResponse response = new IndexingResponse();
         response.setResult(true);
         return response;
     }
 
-    private void deleteAllSiteData(int siteId) {
-        List<PageDto> pages = pageDao.findBySiteId(siteId);
-        List<Integer> pageIds = pages.stream().map(PageDto::getId).toList();
-        indexDao.deleteAllByPageId(pageIds);
-        lemmaDao.deleteBySiteId(siteId);
-        pageDao.deleteAllById(pageIds);
+    private SiteCrawler buildResumedCrawler(SiteDto site) {
+        List<FrontierDto> entries = crawlFrontier.load(site.getId());
+
+        VisitedSet visited = newVisitedSet(entries.size());
+        Set<String> visitedPaths = new HashSet<>();
+        List<FrontierDto> queuedEntries = new ArrayList<>();
+        for (FrontierDto entry : entries) {
+            visited.add(entry.getPath());
+            if (entry.getVisited()) {
+                visitedPaths.add(entry.getPath());
+            } else {
+                queuedEntries.add(entry);
+            }
+        }
+
+        // stored pages that the interrupted crawl has not confirmed are recrawled with conditional requests
+        Map<String, PageDto> knownPages = new ConcurrentHashMap<>();
+        for (PageDto page : pageDao.findValidatorsBySiteId(site.getId())) {
+            if (!visitedPaths.contains(page.getPath())) {
+                knownPages.put(page.getPath(), page);
+            }
+        }
+
+        SiteCrawler crawler = context.getBean(SiteCrawler.class);
+        crawler.setSourcePath("/");
+        crawler.setRoot(true);
+        crawler.setVisited(visited);
+        crawler.setKnownPages(knownPages);
+        crawler.setResumeEntries(queuedEntries);
+        crawler.setSite(site);
+        return crawler;
+    }
+
+    private VisitedSet newVisitedSet(int knownSize) {
+        return new VisitedSet(Math.max(knownSize, visitedExpectedSize), visitedBloomFilter);
     }
 
     private SiteConfig findMatchingConfig(String url) {
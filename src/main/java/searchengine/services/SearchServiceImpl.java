@@ -2,206 +2,341 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import searchengine.dao.IndexDao;
-import searchengine.dao.LemmaDao;
 import searchengine.dao.PageDao;
 import searchengine.dao.SiteDao;
 import searchengine.dto.ApiResponse;
 import searchengine.dto.ErrorResponse;
-import searchengine.dto.indexing.IndexDto;
-import searchengine.dto.indexing.LemmaDto;
 import searchengine.dto.indexing.PageDto;
 import searchengine.dto.indexing.SiteDto;
+import searchengine.dto.search.QueryPlan;
 import searchengine.dto.search.SearchData;
+import searchengine.dto.search.SearchQuery;
 import searchengine.dto.search.SearchResponse;
-import searchengine.utils.HtmlParser;
+import searchengine.dto.search.SearchResult;
+import searchengine.utils.IndexShard;
 import searchengine.utils.Lemmatizer;
+import searchengine.utils.PostingList;
+import searchengine.utils.QueryPlanner;
+import searchengine.utils.RelevanceScorer;
+import searchengine.utils.SearchCache;
+import searchengine.utils.SearchIndex;
+import searchengine.utils.TermPositions;
+import searchengine.utils.TopPages;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SearchServiceImpl implements SearchService {
+    private static final int SNIPPET_LENGTH = 200;
+
     private final Lemmatizer lemmatizer;
-    private final LemmaDao lemmaDao;
-    private final IndexDao indexDao;
     private final PageDao pageDao;
+    private final IndexDao indexDao;
     private final SiteDao siteDao;
-    private final HtmlParser parser;
-    private List<PageDto> relevantPages;
-    private List<LemmaDto> existingLemmas;
-    private List<IndexDto> allIndexes;
-    private Map<Integer, Double> pageAbsRelevanceMap;
-    private double maxRelevance;
+    private final SearchIndex searchIndex;
+    private final SearchCache searchCache;
+    private final RelevanceScorer scorer;
+    private final QueryPlanner queryPlanner;
+    private ExecutorService shardExecutor;
+
+    @Value("${search-settings.shard_threads}")
+    private int shardThreads;
+
+    @PostConstruct
+    private void postConstruct() {
+        shardExecutor = Executors.newFixedThreadPool(shardThreads);
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        shardExecutor.shutdownNow();
+    }
 
     @Override
-    public ApiResponse search(String query, String site, int offset, int limit) {
+    public ApiResponse search(String query, String site, int offset, int limit, boolean debug) {
         if (query.isBlank()) {
             return new ErrorResponse("Задан пустой поисковый запрос");
         }
 
         List<String> queryLemmas = lemmatizer.buildLemmaRankMap(query).keySet().stream().toList();
-
-        Optional<String> noMatchLemma = queryLemmas.stream()
-                .filter(lemma -> lemmaDao.findAllByLemma(List.of(lemma)).isEmpty()).findAny();
-        if (noMatchLemma.isPresent()) {
+        if (queryLemmas.isEmpty()) {
             return emptyResponse();
         }
 
-        existingLemmas = lemmaDao.findAllByLemma(queryLemmas);
-        if (site != null) {
-            int requestSiteId = siteDao.findByUrl(site).orElseThrow().getId();
-            existingLemmas.removeIf(lemma -> lemma.getSiteId() != requestSiteId);
-        }
-        if (existingLemmas.isEmpty()) {
-            return emptyResponse();
+        int depth = offset + limit;
+        String cacheKey = searchCache.buildKey(queryLemmas, site);
+        SearchResult result = searchCache.get(cacheKey, depth);
+        if (result == null) {
+            long generation = searchIndex.getGeneration();
+            result = executeQuery(queryLemmas, site, Math.max(depth, searchCache.getDepth()));
+            searchCache.put(cacheKey, result, generation);
         }
-
-        filterIrrelevantPages();
-        if (relevantPages.isEmpty()) {
+        if (result.getCount() == 0) {
             return emptyResponse();
         }
 
-        getAbsoluteAndMaxRelevance();
-
-        List<SearchData> allData = collectSearchData(query);
-        int bound = Math.min(offset + limit, relevantPages.size());
-        List<SearchData> responseData = allData.subList(offset, bound);
+        List<SearchData> responseData = collectSearchData(queryLemmas, result, offset, limit);
 
         SearchResponse response = new SearchResponse();
         response.setResult(true);
-        response.setCount(relevantPages.size());
+        response.setCount(result.getCount());
         response.setData(responseData);
+        if (debug) {
+            response.setDebug(result.getPlans());
+        }
 
         return response;
     }
 
-    private void filterIrrelevantPages() {
-        List<Integer> existingLemmaIds = existingLemmas.stream().map(LemmaDto::getId).toList();
-        allIndexes = indexDao.findAllByLemmaIds(existingLemmaIds);
-        List<Integer> allPageIds = allIndexes.stream().map(IndexDto::getPageId).toList();
-        List<PageDto> allPages = pageDao.findAllById(allPageIds);
-        relevantPages = new ArrayList<>(allPages);
-        for (LemmaDto lemma : existingLemmas) {
-            List<Integer> lemmaIds = lemmaDao.findAllByLemma(List.of(lemma.getLemma()))
-                    .stream().map(LemmaDto::getId).toList();
-            List<IndexDto> lemmaIndexes = allIndexes.stream()
-                    .filter(index -> lemmaIds.contains(index.getLemmaId())).toList();
-            List<Integer> lemmaPageIds = lemmaIndexes.stream()
-                    .map(IndexDto::getPageId).toList();
-            List<PageDto> lemmaPages = allPages.stream()
-                    .filter(page -> lemmaPageIds.contains(page.getId())).toList();
-            relevantPages.removeIf(page -> !lemmaPages.contains(page));
+    private SearchResult executeQuery(List<String> queryLemmas, String site, int depth) {
+        List<IndexShard> visibleShards = searchIndex.getShards();
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        for (String lemma : queryLemmas) {
+            int documentFrequency = SearchIndex.getDocumentFrequency(visibleShards, lemma);
+            if (documentFrequency == 0) {
+                return SearchResult.EMPTY;
+            }
+            documentFrequencies.put(lemma, documentFrequency);
+        }
+
+        List<IndexShard> shards;
+        if (site != null) {
+            int siteId = siteDao.findByUrl(site).orElseThrow().getId();
+            shards = visibleShards.stream().filter(shard -> shard.getSiteId() == siteId).toList();
+        } else {
+            shards = visibleShards;
+        }
+
+        SearchQuery searchQuery = new SearchQuery(queryLemmas, documentFrequencies,
+                SearchIndex.getDocumentCount(visibleShards), SearchIndex.getAverageLength(visibleShards));
+        if (shards.size() == 1) {
+            return evaluate(searchQuery, shards.get(0), depth);
+        }
+
+        List<Future<SearchResult>> futures = shards.stream()
+                .map(shard -> shardExecutor.submit(() -> evaluate(searchQuery, shard, depth)))
+                .toList();
+        List<SearchResult> shardResults = new ArrayList<>();
+        for (Future<SearchResult> future : futures) {
+            try {
+                shardResults.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
         }
+        return mergeShardResults(shardResults, depth);
     }
 
-    private void getAbsoluteAndMaxRelevance() {
-        List<Integer> relevantPageIds = relevantPages.stream().map(PageDto::getId).toList();
-        List<IndexDto> relevantIndexes = allIndexes.stream()
-                .filter(index -> relevantPageIds.contains(index.getPageId())).toList();
-        pageAbsRelevanceMap = relevantIndexes.stream()
-                .collect(Collectors.toMap(IndexDto::getPageId, IndexDto::getRank, Double::sum));
+    private SearchResult evaluate(SearchQuery searchQuery, IndexShard shard, int depth) {
+        QueryPlan plan = queryPlanner.plan(searchQuery.getLemmas(), shard);
+        List<String> lemmas = plan.getLemmas();
+        int termCount = lemmas.size();
+
+        PostingList[] postings = new PostingList[termCount];
+        RelevanceScorer.TermScorer[] termScorers = new RelevanceScorer.TermScorer[termCount];
+        Integer[] intersectionOrder = new Integer[termCount];
+        for (int j = 0; j < termCount; j++) {
+            String lemma = lemmas.get(j);
+            postings[j] = shard.getPostings(lemma);
+            termScorers[j] = scorer.forTerm(searchQuery, shard, postings[j],
+                    searchQuery.getDocumentFrequencies().get(lemma));
+            intersectionOrder[j] = j;
+        }
+        if (postings[intersectionOrder[0]].isEmpty()) {
+            return new SearchResult(0, new int[0], new double[0], List.of(plan));
+        }
+
+        // every match is counted; only scoring is pruned, starting from the rarest term's exact score
+        int rarestTerm = intersectionOrder[0];
+        Integer[] scoringOrder = Arrays.copyOfRange(intersectionOrder, 1, termCount);
+        Arrays.sort(scoringOrder, Comparator.comparingDouble(j -> -termScorers[j].upperBound()));
+        double[] remainingBounds = new double[termCount];
+        for (int k = termCount - 2; k >= 0; k--) {
+            remainingBounds[k] = remainingBounds[k + 1] + termScorers[scoringOrder[k]].upperBound();
+        }
+
+        TopPages topPages = new TopPages(depth);
+        PostingList rarest = postings[rarestTerm];
+        int[] positions = new int[termCount];
+        int count = 0;
+        candidates:
+        for (int i = 0; i < rarest.size(); i++) {
+            int pageId = rarest.getPageId(i);
+            for (int k = 1; k < termCount; k++) {
+                int j = intersectionOrder[k];
+                positions[j] = postings[j].advance(pageId, positions[j]);
+                if (positions[j] >= postings[j].size()) break candidates;
+                if (postings[j].getPageId(positions[j]) != pageId) continue candidates;
+            }
+            count++;
 
-        maxRelevance = pageAbsRelevanceMap.values().stream()
-                .max(Comparator.naturalOrder()).orElseThrow();
+            double score = termScorers[rarestTerm].score(i);
+            for (int k = 0; k < termCount - 1; k++) {
+                if (topPages.isFull() && score + remainingBounds[k] <= topPages.threshold()) continue candidates;
+                int j = scoringOrder[k];
+                score += termScorers[j].score(positions[j]);
+            }
+            topPages.offer(pageId, score);
+        }
+
+        return topPages.toResult(count, plan);
+    }
+
+    private SearchResult mergeShardResults(List<SearchResult> shardResults, int depth) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> {
+            SearchResult first = shardResults.get(a[0]), second = shardResults.get(b[0]);
+            boolean firstIsWorse = TopPages.isWorse(first.getPageIds()[a[1]], first.getScores()[a[1]],
+                    second.getPageIds()[b[1]], second.getScores()[b[1]]);
+            return firstIsWorse ? 1 : -1;
+        });
+        List<QueryPlan> plans = new ArrayList<>();
+        int count = 0, available = 0;
+        for (int shard = 0; shard < shardResults.size(); shard++) {
+            SearchResult shardResult = shardResults.get(shard);
+            plans.addAll(shardResult.getPlans());
+            count += shardResult.getCount();
+            available += shardResult.getPageIds().length;
+            if (shardResult.getPageIds().length > 0) {
+                heads.add(new int[]{shard, 0});
+            }
+        }
+
+        int size = Math.min(depth, available);
+        int[] pageIds = new int[size];
+        double[] scores = new double[size];
+        for (int i = 0; i < size; i++) {
+            int[] head = heads.poll();
+            SearchResult shardResult = shardResults.get(head[0]);
+            pageIds[i] = shardResult.getPageIds()[head[1]];
+            scores[i] = shardResult.getScores()[head[1]];
+            if (++head[1] < shardResult.getPageIds().length) {
+                heads.add(head);
+            }
+        }
+        return new SearchResult(count, pageIds, scores, plans);
     }
 
-    private List<SearchData> collectSearchData(String query) {
+    private List<SearchData> collectSearchData(List<String> queryLemmas, SearchResult result, int offset, int limit) {
+        int from = Math.min(offset, result.getPageIds().length);
+        int to = Math.min(offset + limit, result.getPageIds().length);
+        if (from >= to) {
+            return List.of();
+        }
+
+        double maxScore = result.getScores()[0] > 0 ? result.getScores()[0] : 1;
+        Map<Integer, Double> pageIdToRelevance = new HashMap<>();
+        List<Integer> pageIds = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            pageIds.add(result.getPageIds()[i]);
+            pageIdToRelevance.put(result.getPageIds()[i], result.getScores()[i] / maxScore);
+        }
+
+        List<PageDto> relevantPages = pageDao.findAllSummariesById(pageIds);
         List<Integer> siteIds = relevantPages.stream().map(PageDto::getSiteId).distinct().toList();
         Map<Integer, SiteDto> siteIdToSite = siteDao.findAllById(siteIds).stream()
                 .collect(Collectors.toMap(SiteDto::getId, siteDto -> siteDto));
 
-        List<SearchData> allData = new ArrayList<>();
-        relevantPages.forEach(page -> {
+        Map<Integer, PageDto> pageIdToPage = relevantPages.stream()
+                .collect(Collectors.toMap(PageDto::getId, page -> page));
+        Map<Integer, Map<String, TermPositions>> pageIdToPositions = indexDao.findPositions(pageIds, queryLemmas);
+
+        List<SearchData> data = new ArrayList<>();
+        pageIds.stream().map(pageIdToPage::get).filter(Objects::nonNull).forEach(page -> {
             SearchData item = new SearchData();
 
             SiteDto pageSite = siteIdToSite.get(page.getSiteId());
             item.setSite(pageSite.getUrl());
             item.setSiteName(pageSite.getName());
             item.setUri(page.getPath());
-            item.setTitle(parser.getTitle(page.getContent()));
+            item.setTitle(page.getTitle());
 
-            double absRelevance = pageAbsRelevanceMap.get(page.getId());
-            double relativeRelevance = absRelevance / maxRelevance;
-            item.setRelevance(relativeRelevance);
+            item.setRelevance(pageIdToRelevance.get(page.getId()));
 
-            String text = parser.getText(page.getContent());
-            String snippet = generateSnippet(text, query);
+            String snippet = generateSnippet(page.getText(),
+                    pageIdToPositions.getOrDefault(page.getId(), Map.of()));
             item.setSnippet(snippet);
 
-            allData.add(item);
+            data.add(item);
         });
-        allData.sort(Comparator.comparing(SearchData::getRelevance).reversed());
 
-        return allData;
+        return data;
     }
 
-    private String generateSnippet(String text, String query) {
-        StringBuilder snippet = new StringBuilder();
-        List<String> matchingWords = findMatchingWords(text, query);
-        String regex = "(?<=[^A-Za-z'А-Яа-яЁё])(" +
-                String.join("|", matchingWords) +
-                ")(?=[^A-Za-z'А-Яа-яЁё])";
-        Matcher match = Pattern.compile(regex).matcher(text);
-        int range = 80 / matchingWords.size();
-        String bOpen = "<b>", bClose = "</b>", dots = "...";
-        if (!match.find()) return "";
-        int start = Math.max(0, match.start() - range);
-        snippet.append(dots)
-                .append(text, start, match.start())
-                .append(bOpen)
-                .append(text, match.start(), match.end())
-                .append(bClose);
-        int lastMatchEnd = match.end();
-
-        while (match.find() && !matchingWords.isEmpty()) {
-            String matchingWord = match.group();
-            if (!matchingWords.contains(matchingWord)) {
-                continue;
+    private String generateSnippet(String text, Map<String, TermPositions> lemmaPositionsMap) {
+        List<int[]> occurrences = new ArrayList<>();
+        int lemmaIndex = 0;
+        for (TermPositions positions : lemmaPositionsMap.values()) {
+            for (int i = 0; i < positions.size(); i++) {
+                if (positions.getEnd(i) <= text.length()) {
+                    occurrences.add(new int[]{positions.getStart(i), positions.getEnd(i), lemmaIndex});
+                }
+            }
+            lemmaIndex++;
+        }
+        if (occurrences.isEmpty()) return "";
+        occurrences.sort(Comparator.comparingInt(occurrence -> occurrence[0]));
+
+        int[] lemmaCounts = new int[lemmaIndex];
+        int distinct = 0, bestDistinct = 0, bestCount = 0, bestLeft = 0, bestRight = 0;
+        for (int left = 0, right = 0; right < occurrences.size(); right++) {
+            if (lemmaCounts[occurrences.get(right)[2]]++ == 0) distinct++;
+            while (left < right && occurrences.get(right)[1] - occurrences.get(left)[0] > SNIPPET_LENGTH) {
+                if (--lemmaCounts[occurrences.get(left)[2]] == 0) distinct--;
+                left++;
             }
-            matchingWords.remove(matchingWord);
-            if (match.start() - lastMatchEnd > range * 2) {
-                snippet.append(text, lastMatchEnd, lastMatchEnd + range)
-                        .append(dots)
-                        .append(text, match.start() - range, match.start())
-                        .append(bOpen)
-                        .append(text, match.start(), match.end())
-                        .append(bClose);
-            } else {
-                snippet.append(text, lastMatchEnd, match.start())
-                        .append(bOpen)
-                        .append(text, match.start(), match.end())
-                        .append(bClose);
+            int count = right - left + 1;
+            if (distinct > bestDistinct || (distinct == bestDistinct && count > bestCount)) {
+                bestDistinct = distinct;
+                bestCount = count;
+                bestLeft = left;
+                bestRight = right;
             }
-            lastMatchEnd = match.end();
         }
-        if (lastMatchEnd + range < text.length()) {
-            snippet.append(text, lastMatchEnd, lastMatchEnd + range).append(dots);
-        } else {
-            snippet.append(text, lastMatchEnd, text.length());
+
+        int windowStart = occurrences.get(bestLeft)[0];
+        int windowEnd = occurrences.get(bestRight)[1];
+        int padding = Math.max(0, SNIPPET_LENGTH - (windowEnd - windowStart)) / 2;
+        int snippetStart = Math.max(0, windowStart - padding);
+        int snippetEnd = Math.min(text.length(), windowEnd + padding);
+        if (snippetStart > 0) {
+            int space = text.indexOf(' ', snippetStart);
+            if (space >= 0 && space < windowStart) snippetStart = space + 1;
+        }
+        if (snippetEnd < text.length()) {
+            int space = text.lastIndexOf(' ', snippetEnd);
+            if (space > windowEnd) snippetEnd = space;
         }
 
-        return snippet.toString();
-    }
+        StringBuilder snippet = new StringBuilder();
+        if (snippetStart > 0) snippet.append("...");
+        int cursor = snippetStart;
+        for (int[] occurrence : occurrences) {
+            if (occurrence[0] < cursor || occurrence[1] > snippetEnd) continue;
+            snippet.append(text, cursor, occurrence[0])
+                    .append("<b>")
+                    .append(text, occurrence[0], occurrence[1])
+                    .append("</b>");
+            cursor = occurrence[1];
+        }
+        snippet.append(text, cursor, snippetEnd);
+        if (snippetEnd < text.length()) snippet.append("...");
 
-    private List<String> findMatchingWords(String text, String query) {
-        List<String> queryLemmas = lemmatizer.buildLemmaRankMap(query).keySet().stream().toList();
-        Map<String, List<String>> wordLemmasMap = lemmatizer.buildWordLemmasMap(text);
-        Set<String> matchingWords = new HashSet<>();
-
-        wordLemmasMap.forEach((word, lemmas) -> {
-            Optional<String> match = lemmas.stream().filter(queryLemmas::contains).findAny();
-            if (match.isPresent()) {
-                matchingWords.add(word);
-                log.info("{} - {}", word, match.get());
-            }
-        });
-        return new ArrayList<>(matchingWords);
+        return snippet.toString();
     }
 
     private SearchResponse emptyResponse() {
@@ -13,7 +13,11 @@ import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
+import searchengine.utils.IndexingPipeline;
 import searchengine.utils.IndexingTasksManager;
+import searchengine.utils.LemmaDictionary;
+import searchengine.utils.SearchCache;
+import searchengine.utils.SitePurger;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -28,6 +32,10 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final LemmaDao lemmaDao;
     private final IndexingTasksManager tasksManager;
     private final SiteDao siteDao;
+    private final SearchCache searchCache;
+    private final IndexingPipeline pipeline;
+    private final LemmaDictionary lemmaDictionary;
+    private final SitePurger sitePurger;
 
     @Override
     public ApiResponse getStatistics() {
@@ -47,12 +55,13 @@ public class StatisticsServiceImpl implements StatisticsService {
             String lastError = "";
             long statusTime = System.currentTimeMillis();
 
-            Optional<SiteDto> existingSite = siteDao.findByUrl(siteConfig.getUrl());
+            Optional<SiteDto> existingSite = siteDao.findLatestByUrl(siteConfig.getUrl());
             if (existingSite.isPresent()) {
                 SiteDto site = existingSite.get();
                 int siteId = site.getId();
                 pages = pageDao.getSitePagesCount(siteId);
                 lemmas = lemmaDao.getSiteLemmasCount(siteId);
+                item.setLemmaCacheBytes(lemmaDictionary.getSiteBytes(siteId));
                 statusTime = site.getStatusTime().getTime();
                 lastError = site.getLastError() == null ? "" : site.getLastError();
                 item.setStatus(site.getStatus());
@@ -69,6 +78,9 @@ public class StatisticsServiceImpl implements StatisticsService {
         StatisticsData data = new StatisticsData();
         data.setTotal(total);
         data.setDetailed(detailed);
+        data.setCache(searchCache.getStatistics());
+        data.setPipeline(pipeline.getStatistics());
+        data.setPurges(sitePurger.getStatistics());
         response.setStatistics(data);
         response.setResult(true);
         return response;
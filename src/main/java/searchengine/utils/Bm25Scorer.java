@@ -0,0 +1,41 @@
+package searchengine.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.dto.search.SearchQuery;
+
+@Component
+@ConditionalOnProperty(name = "search-settings.scorer", havingValue = "bm25", matchIfMissing = true)
+public class Bm25Scorer implements RelevanceScorer {
+    @Value("${search-settings.bm25_k1}")
+    private double k1;
+
+    @Value("${search-settings.bm25_b}")
+    private double b;
+
+    @Override
+    public TermScorer forTerm(SearchQuery query, IndexShard shard, PostingList postings, int documentFrequency) {
+        double documents = query.getDocumentCount();
+        double idf = Math.log(1 + (documents - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        double averageLength = query.getAverageLength();
+
+        return new TermScorer() {
+            @Override
+            public double score(int position) {
+                int length = shard.getLength(postings.getPageId(position));
+                return weigh(postings.getRank(position), length, idf, averageLength);
+            }
+
+            @Override
+            public double upperBound() {
+                return weigh(postings.getMaxRank(), postings.getMinLength(), idf, averageLength);
+            }
+        };
+    }
+
+    private double weigh(double frequency, int length, double idf, double averageLength) {
+        double norm = k1 * (1 - b + b * length / averageLength);
+        return idf * frequency * (k1 + 1) / (frequency + norm);
+    }
+}
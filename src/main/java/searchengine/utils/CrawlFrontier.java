@@ -0,0 +1,115 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.dao.FrontierDao;
+import searchengine.dto.indexing.FrontierDto;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CrawlFrontier {
+    @Value("${indexing-settings.frontier_flush_interval_ms}")
+    private long flushIntervalMs;
+
+    private final Queue<FrontierDto> pendingEnqueued = new ConcurrentLinkedQueue<>();
+    private final Queue<FrontierDto> pendingVisited = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService flusher;
+
+    private final FrontierDao frontierDao;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    public void enqueue(int siteId, List<String> paths, int depth) {
+        paths.forEach(path -> pendingEnqueued.add(buildEntry(siteId, path, depth)));
+    }
+
+    public void markVisited(int siteId, String path) {
+        pendingVisited.add(buildEntry(siteId, path, 0));
+    }
+
+    public List<FrontierDto> load(int siteId) {
+        flush();
+        return frontierDao.findAllBySiteId(siteId);
+    }
+
+    public boolean hasEntries(int siteId) {
+        flush();
+        return frontierDao.existsBySiteId(siteId);
+    }
+
+    public synchronized void removeSite(int siteId) {
+        pendingEnqueued.removeIf(entry -> entry.getSiteId() == siteId);
+        pendingVisited.removeIf(entry -> entry.getSiteId() == siteId);
+        frontierDao.deleteBySiteId(siteId);
+    }
+
+    public synchronized void flush() {
+        long start = System.currentTimeMillis();
+
+        // A page is marked visited only after its links were enqueued, so draining the visited marks first
+        // guarantees a checkpoint never holds a visited page whose links are missing.
+        List<FrontierDto> visited = drain(pendingVisited);
+        List<FrontierDto> enqueued = drain(pendingEnqueued);
+        if (visited.isEmpty() && enqueued.isEmpty()) return;
+
+        try {
+            frontierDao.enqueueAll(enqueued);
+            frontierDao.markAllVisited(visited);
+        } catch (RuntimeException e) {
+            pendingEnqueued.addAll(enqueued);
+            pendingVisited.addAll(visited);
+            throw e;
+        }
+
+        log.info("FRONTIER checkpointed {} queued, {} visited in {} ms", enqueued.size(), visited.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    private List<FrontierDto> drain(Queue<FrontierDto> queue) {
+        List<FrontierDto> entries = new ArrayList<>();
+        FrontierDto entry;
+        while ((entry = queue.poll()) != null) {
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private FrontierDto buildEntry(int siteId, String path, int depth) {
+        FrontierDto entry = new FrontierDto();
+        entry.setSiteId(siteId);
+        entry.setPath(path);
+        entry.setDepth(depth);
+        return entry;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Crawl frontier checkpoint failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package searchengine.utils;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+@Getter
+public class FetchStatusException extends IOException {
+    private final int statusCode;
+    private final String url;
+
+    public FetchStatusException(int statusCode, String url) {
+        super("HTTP error fetching URL. Status=" + statusCode + ", URL=[" + url + "]");
+        this.statusCode = statusCode;
+        this.url = url;
+    }
+}
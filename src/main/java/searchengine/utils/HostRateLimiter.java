@@ -0,0 +1,34 @@
+package searchengine.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class HostRateLimiter {
+    private final double permitsPerSecond;
+    private final double burst;
+    private final Map<String, Bucket> hostToBucket = new ConcurrentHashMap<>();
+
+    public HostRateLimiter(double permitsPerSecond, double burst) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+    }
+
+    public long reserve(String host) {
+        return hostToBucket.computeIfAbsent(host, key -> new Bucket()).reserve();
+    }
+
+    private class Bucket {
+        private double tokens = burst;
+        private long lastRefill = System.nanoTime();
+
+        private synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefill = now;
+            tokens -= 1;
+            if (tokens >= 0) return 0;
+            return (long) (-tokens / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+}
@@ -2,52 +2,38 @@ package searchengine.utils;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import searchengine.config.AgentsList;
 
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class HtmlParser {
-    private final AgentsList agentsList;
-    private final Random random = new Random();
-
-    public ResponseEntity<String> getResponse(String url) throws IOException, InterruptedException {
-        Thread.sleep(1000);
-        List<String> agents = agentsList.getAgents();
-        String agent = agents.get(random.nextInt(agents.size()));
-        Connection.Response response = Jsoup.connect(url)
-                .userAgent(agent)
-                .referrer("http://www.google.com")
-                .execute();
-        return ResponseEntity.ok(response.body());
+    public String getContentHash(String body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    public List<String> getLinks(String body) {
-        Set<String> links = new HashSet<>();
-        Elements elements = Jsoup.parse(body).getElementsByAttribute("href");
-        elements.forEach(element -> links.add(element.attr("href")));
-        return new ArrayList<>(links);
-    }
+    public ParsedPage parse(String body) {
+        Document document = Jsoup.parse(body);
 
-    public String getText(String body) {
-        return Jsoup.parse(body).text();
-    }
+        Element header = document.selectFirst("title");
+        String title = header == null ? "Без заголовка" : header.text();
 
-    public String getTitle(String body) {
-        Element header = Jsoup.parse(body).selectFirst("title");
-        if (header == null) {
-            return "Без заголовка";
-        } else {
-            return header.text();
-        }
+        Set<String> links = new LinkedHashSet<>();
+        document.getElementsByAttribute("href").forEach(element -> links.add(element.attr("href")));
+
+        return new ParsedPage(title, document.text(), new ArrayList<>(links));
     }
 }
@@ -1,108 +1,156 @@
 package searchengine.utils;
 
 import lombok.RequiredArgsConstructor;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.dao.IndexDao;
 import searchengine.dao.LemmaDao;
+import searchengine.dao.PageDao;
 import searchengine.dto.indexing.IndexDto;
 import searchengine.dto.indexing.LemmaDto;
 import searchengine.dto.indexing.PageDto;
 
-import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
-@Setter
 @Component
-@Scope("prototype")
 @RequiredArgsConstructor
-public class IndexProcessor extends Thread {
-    private List<PageDto> pages;
-    private Map<String, Integer> lemmaFrequencyMap = new HashMap<>();
-
+public class IndexProcessor {
+    private final IndexDao indexDao;
+    private final PageDao pageDao;
+    private final SearchIndex searchIndex;
+    private final LemmaDictionary lemmaDictionary;
+    private final LemmaFrequencies lemmaFrequencies;
     private final Lemmatizer lemmatizer;
-    private final HtmlParser parser;
     private final LemmaDao lemmaDao;
-    private final IndexDao indexDao;
-    private final IndexingTasksManager tasksManager;
-
-    @Override
-    public void run() {
-        Map<Integer, Map<String, Double>> pageIdToLemmaRankMap = new HashMap<>();
-        pages.forEach(page -> {
-            String text = parser.getText(page.getContent());
-            Map<String, Double> lemmaRankMap = lemmatizer.buildLemmaRankMap(text);
-            pageIdToLemmaRankMap.put(page.getId(), lemmaRankMap);
-            List<String> pageLemmas = lemmaRankMap.keySet().stream().toList();
-            pageLemmas.forEach(lemma -> {
-                int frequency = 1;
-                if (lemmaFrequencyMap.containsKey(lemma)) {
-                    frequency += lemmaFrequencyMap.get(lemma);
+    private final TransactionTemplate transactionTemplate;
+
+    public void index(int siteId, List<LemmatizedPage> pages) {
+        Map<String, Integer> lemmaFrequencyMap = new HashMap<>();
+        pages.forEach(page -> page.getLemmaPositionsMap().keySet()
+                .forEach(lemma -> lemmaFrequencyMap.merge(lemma, 1, Integer::sum)));
+
+        Map<String, Integer> lemmaToId = lemmaDictionary.resolveOrCreate(siteId, lemmaFrequencyMap.keySet());
+        lemmaFrequencies.add(siteId, lemmaFrequencyMap);
+
+        List<IndexDto> indexes = new ArrayList<>();
+        Map<Integer, Map<String, Double>> indexedPages = new HashMap<>();
+        Map<Integer, Integer> pageIdToLength = new HashMap<>();
+        List<PageDto> measuredPages = new ArrayList<>();
+        for (LemmatizedPage lemmatizedPage : pages) {
+            PageDto page = lemmatizedPage.getPage();
+            Map<String, TermPositions> lemmaPositionsMap = lemmatizedPage.getLemmaPositionsMap();
+            indexedPages.put(page.getId(), addIndexes(indexes, page.getId(), lemmaPositionsMap, lemmaToId));
+
+            page.setLength(countTokens(lemmaPositionsMap));
+            pageIdToLength.put(page.getId(), page.getLength());
+            measuredPages.add(page);
+
+            log.info("{} - {} INDEXED", siteId, page.getPath());
+        }
+
+        indexDao.saveAll(indexes);
+        pageDao.updateLengths(measuredPages);
+        searchIndex.addPages(siteId, indexedPages, pageIdToLength);
+    }
+
+    public void indexPage(PageDto page) {
+        long start = System.currentTimeMillis();
+        int siteId = page.getSiteId();
+        Map<String, TermPositions> lemmaPositionsMap = lemmatizer.buildLemmaPositionsMap(page.getText());
+        page.setLength(countTokens(lemmaPositionsMap));
+
+        Map<String, Double> lemmaRankMap = new HashMap<>();
+        Set<String> oldLemmas = new HashSet<>();
+        List<String> removedLemmas;
+        try {
+            removedLemmas = transactionTemplate.execute(status -> {
+                if (page.getId() == null) {
+                    pageDao.save(page);
+                } else {
+                    oldLemmas.addAll(indexDao.findLemmasByPageIds(List.of(page.getId())));
+                    pageDao.update(page);
                 }
-                lemmaFrequencyMap.put(lemma, frequency);
+
+                List<LemmaDto> lemmaDeltas = new ArrayList<>();
+                lemmaPositionsMap.keySet().stream().filter(lemma -> !oldLemmas.contains(lemma))
+                        .forEach(lemma -> lemmaDeltas.add(buildLemmaDelta(siteId, lemma, 1)));
+                List<String> droppedLemmas = oldLemmas.stream()
+                        .filter(lemma -> !lemmaPositionsMap.containsKey(lemma)).toList();
+                droppedLemmas.forEach(lemma -> lemmaDeltas.add(buildLemmaDelta(siteId, lemma, -1)));
+                lemmaDao.addFrequencies(lemmaDeltas);
+
+                Map<String, Integer> lemmaToId = lemmaDictionary.resolveOrCreate(siteId, lemmaPositionsMap.keySet());
+                List<IndexDto> indexes = new ArrayList<>();
+                lemmaRankMap.putAll(addIndexes(indexes, page.getId(), lemmaPositionsMap, lemmaToId));
+                indexDao.deleteAllByPageId(List.of(page.getId()));
+                indexDao.saveAll(indexes);
+
+                return lemmaDao.deleteUnused(droppedLemmas, siteId);
             });
-        });
-        int siteId = pages.get(0).getSiteId();
-
-        updateAndCreateLemmas(siteId);
-
-        int i = 0;
-        while (tasksManager.isRunning() && i < pages.size()) {
-            PageDto page = pages.get(i);
-            Map<String, Double> lemmaRankMap = pageIdToLemmaRankMap.get(page.getId());
-            List<String> pageLemmas = lemmaRankMap.keySet().stream().toList();
-            List<IndexDto> indexes = lemmaDao.findAllByLemmaAndSiteId(pageLemmas, siteId).stream().map(lemma -> {
-                IndexDto index = new IndexDto();
-                index.setPageId(page.getId());
-                index.setLemmaId(lemma.getId());
-                index.setRank(lemmaRankMap.get(lemma.getLemma()));
-                return index;
-            }).toList();
-            indexDao.saveAll(indexes);
-            i++;
-
-            log.info("{} - {} INDEXED {}/{}", siteId, page.getPath(), i, pages.size());
+        } catch (RuntimeException e) {
+            lemmaDictionary.removeSite(siteId);
+            throw e;
         }
+
+        lemmaDictionary.removeAll(siteId, removedLemmas);
+        searchIndex.removePages(siteId, List.of(page.getId()), oldLemmas);
+        searchIndex.addPages(siteId, Map.of(page.getId(), lemmaRankMap), Map.of(page.getId(), page.getLength()));
+
+        log.info("{} - {} REINDEXED in {} ms", siteId, page.getPath(), System.currentTimeMillis() - start);
     }
 
-    private void updateAndCreateLemmas(int siteId) {
-        List<String> lemmas = lemmaFrequencyMap.keySet().stream().toList();
+    public void unindex(int siteId, List<Integer> pageIds) {
+        if (pageIds.isEmpty()) return;
 
-        synchronized (lemmaDao) {
-            if (!tasksManager.isRunning()) {
-                return;
-            }
+        Map<String, Integer> lemmaDeltaMap = new HashMap<>();
+        indexDao.findLemmasByPageIds(pageIds).forEach(lemma -> lemmaDeltaMap.merge(lemma, -1, Integer::sum));
+        lemmaFrequencies.add(siteId, lemmaDeltaMap);
 
-            long start = System.currentTimeMillis();
+        indexDao.deleteAllByPageId(pageIds);
+        searchIndex.removePages(siteId, pageIds, lemmaDeltaMap.keySet());
+        pageDao.deleteAllById(pageIds);
+    }
 
-            List<LemmaDto> existingLemmas = lemmaDao.findAllByLemmaAndSiteId(lemmas, siteId);
-            existingLemmas.forEach(lemma -> {
-                int frequency = lemma.getFrequency() + lemmaFrequencyMap.get(lemma.getLemma());
-                lemma.setFrequency(frequency);
-            });
-            lemmaDao.updateAll(existingLemmas);
-
-            List<String> existingLemmaWords = existingLemmas.stream().map(LemmaDto::getLemma).toList();
-            List<LemmaDto> newLemmas = lemmas.stream()
-                    .filter(lemma -> !existingLemmaWords.contains(lemma))
-                    .map(lemma -> {
-                        LemmaDto lemmaDto = new LemmaDto();
-                        lemmaDto.setLemma(lemma);
-                        lemmaDto.setSiteId(siteId);
-                        lemmaDto.setFrequency(1);
-                        return lemmaDto;
-                    }).toList();
-            lemmaDao.saveAll(newLemmas);
-
-            Duration duration = Duration.ofMillis(System.currentTimeMillis() - start);
-            int minutes = duration.toMinutesPart();
-            int seconds = duration.toSecondsPart();
-            log.info("LEMMAS update time {}:{}", minutes, seconds);
+    private Map<String, Double> addIndexes(List<IndexDto> indexes, int pageId,
+                                           Map<String, TermPositions> lemmaPositionsMap,
+                                           Map<String, Integer> lemmaToId) {
+        Map<String, Double> lemmaRankMap = new HashMap<>();
+        lemmaPositionsMap.forEach((lemma, positions) -> {
+            lemmaRankMap.put(lemma, (double) positions.size());
+
+            Integer lemmaId = lemmaToId.get(lemma);
+            if (lemmaId == null) return;
+
+            IndexDto index = new IndexDto();
+            index.setPageId(pageId);
+            index.setLemmaId(lemmaId);
+            index.setRank((double) positions.size());
+            index.setPositions(positions.encode());
+            indexes.add(index);
+        });
+        return lemmaRankMap;
+    }
+
+    private LemmaDto buildLemmaDelta(int siteId, String lemma, int delta) {
+        LemmaDto lemmaDto = new LemmaDto();
+        lemmaDto.setLemma(lemma);
+        lemmaDto.setSiteId(siteId);
+        lemmaDto.setFrequency(delta);
+        return lemmaDto;
+    }
+
+    private int countTokens(Map<String, TermPositions> lemmaPositionsMap) {
+        int length = 0;
+        for (TermPositions positions : lemmaPositionsMap.values()) {
+            length = Math.max(length, positions.getPosition(positions.size() - 1) + 1);
         }
+        return length;
     }
 }
@@ -0,0 +1,73 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RequiredArgsConstructor
+public class IndexShard {
+    @Getter
+    private final int siteId;
+    private final Map<String, PostingList> lemmaToPostings = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> pageIdToLength = new ConcurrentHashMap<>();
+    private final AtomicLong totalLength = new AtomicLong();
+
+    public PostingList getPostings(String lemma) {
+        return lemmaToPostings.getOrDefault(lemma, PostingList.EMPTY);
+    }
+
+    public int getLength(int pageId) {
+        return pageIdToLength.getOrDefault(pageId, 0);
+    }
+
+    public int getDocumentCount() {
+        return pageIdToLength.size();
+    }
+
+    public long getTotalLength() {
+        return totalLength.get();
+    }
+
+    public int getLemmaCount() {
+        return lemmaToPostings.size();
+    }
+
+    public void putPage(int pageId, int length) {
+        Integer previous = pageIdToLength.put(pageId, length);
+        totalLength.addAndGet(length - (previous == null ? 0 : previous));
+    }
+
+    public void addPostings(Map<String, PostingList.Builder> lemmaToBuilder) {
+        lemmaToBuilder.forEach((lemma, builder) ->
+                lemmaToPostings.merge(lemma, builder.build(), PostingList::merge));
+    }
+
+    public void addPages(Map<Integer, Map<String, Double>> pageIdToLemmaRankMap, Map<Integer, Integer> pageIdToPageLength) {
+        Map<String, PostingList.Builder> lemmaToBuilder = new HashMap<>();
+        pageIdToLemmaRankMap.forEach((pageId, lemmaRankMap) -> {
+            int length = pageIdToPageLength.getOrDefault(pageId, 0);
+            putPage(pageId, length);
+            lemmaRankMap.forEach((lemma, rank) ->
+                    lemmaToBuilder.computeIfAbsent(lemma, l -> new PostingList.Builder())
+                            .add(pageId, rank.floatValue(), length));
+        });
+        addPostings(lemmaToBuilder);
+    }
+
+    public void removePages(Collection<Integer> pageIds, Collection<String> lemmas) {
+        int[] sortedPageIds = pageIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+        lemmas.forEach(lemma -> lemmaToPostings.computeIfPresent(lemma, (key, postings) -> {
+            PostingList remaining = postings.removeAll(sortedPageIds);
+            return remaining.isEmpty() ? null : remaining;
+        }));
+        pageIds.forEach(pageId -> {
+            Integer length = pageIdToLength.remove(pageId);
+            if (length != null) totalLength.addAndGet(-length);
+        });
+    }
+}
@@ -0,0 +1,254 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.dao.PageDao;
+import searchengine.dao.SiteDao;
+import searchengine.dto.indexing.PageDto;
+import searchengine.dto.indexing.SiteDto;
+import searchengine.dto.statistics.StageStatistics;
+import searchengine.model.Status;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexingPipeline {
+    @Value("${indexing-settings.queue_capacity}")
+    private int queueCapacity;
+
+    @Value("${indexing-settings.extract_threads}")
+    private int extractThreads;
+
+    @Value("${indexing-settings.lemmatize_threads}")
+    private int lemmatizeThreads;
+
+    @Value("${indexing-settings.persist_threads}")
+    private int persistThreads;
+
+    @Value("${indexing-settings.batch_size}")
+    private int batchSize;
+
+    private BlockingQueue<PageDto> extractQueue;
+    private BlockingQueue<PageDto> lemmatizeQueue;
+    private BlockingQueue<LemmatizedPage> persistQueue;
+    private ExecutorService workers;
+
+    private final LongAdder fetched = new LongAdder();
+    private final LongAdder extracted = new LongAdder();
+    private final LongAdder lemmatized = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private volatile long statisticsStart = System.currentTimeMillis();
+
+    private final Map<Integer, Integer> siteIdToPending = new HashMap<>();
+    private final Map<Integer, CompletableFuture<Void>> siteIdToDrained = new HashMap<>();
+
+    private final Lemmatizer lemmatizer;
+    private final PageDao pageDao;
+    private final SiteDao siteDao;
+    private final IndexProcessor indexProcessor;
+    private final IndexingTasksManager tasksManager;
+    private final CrawlFrontier crawlFrontier;
+
+    @PostConstruct
+    public void start() {
+        extractQueue = new ArrayBlockingQueue<>(queueCapacity);
+        lemmatizeQueue = new ArrayBlockingQueue<>(queueCapacity);
+        persistQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        workers = Executors.newFixedThreadPool(extractThreads + lemmatizeThreads + persistThreads);
+        for (int i = 0; i < extractThreads; i++) workers.submit(this::runExtractStage);
+        for (int i = 0; i < lemmatizeThreads; i++) workers.submit(this::runLemmatizeStage);
+        for (int i = 0; i < persistThreads; i++) workers.submit(this::runPersistStage);
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    public void submit(PageDto page) {
+        synchronized (siteIdToPending) {
+            siteIdToPending.merge(page.getSiteId(), 1, Integer::sum);
+        }
+        try {
+            extractQueue.put(page);
+            fetched.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete(List.of(page));
+        }
+    }
+
+    public CompletableFuture<Void> whenSiteDrained(int siteId) {
+        synchronized (siteIdToPending) {
+            if (!siteIdToPending.containsKey(siteId)) return CompletableFuture.completedFuture(null);
+            return siteIdToDrained.computeIfAbsent(siteId, id -> new CompletableFuture<>());
+        }
+    }
+
+    public void clear() {
+        List<PageDto> dropped = new ArrayList<>();
+        extractQueue.drainTo(dropped);
+        lemmatizeQueue.drainTo(dropped);
+        List<LemmatizedPage> droppedLemmatized = new ArrayList<>();
+        persistQueue.drainTo(droppedLemmatized);
+        droppedLemmatized.forEach(page -> dropped.add(page.getPage()));
+        complete(dropped);
+        log.info("Pipeline cleared, {} pages dropped", dropped.size());
+    }
+
+    public void resetStatistics() {
+        fetched.reset();
+        extracted.reset();
+        lemmatized.reset();
+        persisted.reset();
+        statisticsStart = System.currentTimeMillis();
+    }
+
+    public List<StageStatistics> getStatistics() {
+        ForkJoinPool crawlPool = tasksManager.getPool();
+        int crawlThreads = crawlPool == null ? 0 : crawlPool.getParallelism();
+        int crawlQueue = crawlPool == null ? 0 : (int) Math.min(Integer.MAX_VALUE,
+                crawlPool.getQueuedSubmissionCount() + crawlPool.getQueuedTaskCount());
+
+        List<StageStatistics> statistics = new ArrayList<>();
+        statistics.add(buildStageStatistics("fetch", crawlThreads, crawlQueue, 0, fetched));
+        statistics.add(buildStageStatistics("extract", extractThreads, extractQueue.size(), queueCapacity, extracted));
+        statistics.add(buildStageStatistics("lemmatize", lemmatizeThreads, lemmatizeQueue.size(), queueCapacity, lemmatized));
+        statistics.add(buildStageStatistics("persist", persistThreads, persistQueue.size(), queueCapacity, persisted));
+        return statistics;
+    }
+
+    private StageStatistics buildStageStatistics(String name, int threads, int queueSize, int capacity,
+                                                 LongAdder processed) {
+        double seconds = Math.max(1, System.currentTimeMillis() - statisticsStart) / 1000.0;
+        StageStatistics stage = new StageStatistics();
+        stage.setName(name);
+        stage.setThreads(threads);
+        stage.setQueueSize(queueSize);
+        stage.setQueueCapacity(capacity);
+        stage.setProcessed(processed.sum());
+        stage.setThroughput(processed.sum() / seconds);
+        return stage;
+    }
+
+    private void runExtractStage() {
+        while (!Thread.currentThread().isInterrupted()) {
+            PageDto page;
+            try {
+                page = extractQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                page.setCompressedContent(ContentCodec.compress(page.getContent()));
+                extracted.increment();
+                lemmatizeQueue.put(page);
+            } catch (InterruptedException e) {
+                complete(List.of(page));
+                return;
+            } catch (Exception e) {
+                log.error("{} - {} extract failed: {}", page.getSiteId(), page.getPath(), e.getMessage());
+                complete(List.of(page));
+            }
+        }
+    }
+
+    private void runLemmatizeStage() {
+        while (!Thread.currentThread().isInterrupted()) {
+            PageDto page;
+            try {
+                page = lemmatizeQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                LemmatizedPage lemmatizedPage = new LemmatizedPage(page, lemmatizer.buildLemmaPositionsMap(page.getText()));
+                lemmatized.increment();
+                persistQueue.put(lemmatizedPage);
+            } catch (InterruptedException e) {
+                complete(List.of(page));
+                return;
+            } catch (Exception e) {
+                log.error("{} - {} lemmatize failed: {}", page.getSiteId(), page.getPath(), e.getMessage());
+                complete(List.of(page));
+            }
+        }
+    }
+
+    private void runPersistStage() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<LemmatizedPage> batch = new ArrayList<>();
+            try {
+                batch.add(persistQueue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            persistQueue.drainTo(batch, batchSize - 1);
+
+            List<PageDto> pages = batch.stream().map(LemmatizedPage::getPage).toList();
+            try {
+                persist(batch, pages);
+                persisted.add(batch.size());
+            } catch (Exception e) {
+                log.error("Persisting {} pages failed: {}", batch.size(), e.getMessage());
+            } finally {
+                complete(pages);
+            }
+        }
+    }
+
+    private void persist(List<LemmatizedPage> batch, List<PageDto> pages) {
+        // the links found on these pages must reach the frontier before the pages themselves are stored
+        crawlFrontier.flush();
+        pageDao.saveAll(pages);
+        pages.forEach(page -> crawlFrontier.markVisited(page.getSiteId(), page.getPath()));
+
+        Map<Integer, List<LemmatizedPage>> siteIdToPages = new HashMap<>();
+        batch.forEach(page -> {
+            page.getPage().setContent(null);
+            siteIdToPages.computeIfAbsent(page.getPage().getSiteId(), siteId -> new ArrayList<>()).add(page);
+        });
+        siteIdToPages.forEach(indexProcessor::index);
+
+        List<SiteDto> sites = siteDao.findAllByStatus(Status.INDEXING);
+        sites.forEach(site -> {
+            site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
+            siteDao.save(site);
+        });
+    }
+
+    private void complete(List<PageDto> pages) {
+        if (pages.isEmpty()) return;
+
+        List<CompletableFuture<Void>> drained = new ArrayList<>();
+        synchronized (siteIdToPending) {
+            pages.forEach(page -> siteIdToPending.computeIfPresent(page.getSiteId(),
+                    (siteId, pending) -> pending > 1 ? pending - 1 : null));
+            siteIdToDrained.keySet().removeIf(siteId -> {
+                if (siteIdToPending.containsKey(siteId)) return false;
+                drained.add(siteIdToDrained.get(siteId));
+                return true;
+            });
+        }
+        drained.forEach(future -> future.complete(null));
+    }
+}
@@ -6,67 +6,166 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Getter
 @Setter
 @Component
-public class IndexingTasksManager implements Runnable {
+public class IndexingTasksManager {
     private volatile boolean running = false;
-    private List<ForkJoinTask<Void>> tasks = new ArrayList<>();
     private ForkJoinPool pool;
+    private long start;
+
+    private final Map<Integer, SiteTasks> siteIdToTasks = new ConcurrentHashMap<>();
+    private final ExecutorService finisher = Executors.newSingleThreadExecutor();
 
     @Value("${indexing-settings.thread_multiplier}")
     private int threadMultiplier;
 
-    @Override
-    public void run() {
-        long start = System.currentTimeMillis();
+    @Value("${indexing-settings.stop_timeout_ms}")
+    private long stopTimeoutMs;
 
-        while (!tasks.isEmpty() && running)
-            checkAndRemoveCompletedTasks();
+    @PreDestroy
+    public void stop() {
+        finisher.shutdownNow();
+    }
 
-        pool.shutdown();
+    public void abort() {
+        // sites are marked stopped before tasks can observe running == false and drain their counters
+        siteIdToTasks.values().forEach(siteTasks -> siteTasks.stopped = true);
+        running = false;
+        ForkJoinPool stoppedPool = pool;
+        stoppedPool.shutdownNow();
+        // interrupted tasks may still be handing pages to the pipeline, so sites are finished only once they are gone
+        finisher.execute(() -> {
+            try {
+                if (!stoppedPool.awaitTermination(stopTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    log.warn("Crawl tasks did not stop in {} ms", stopTimeoutMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            siteIdToTasks.values().forEach(this::finishSite);
+        });
+    }
 
-        Duration duration = Duration.ofMillis(System.currentTimeMillis() - start);
-        int hours = duration.toHoursPart();
-        int minutes = duration.toMinutesPart();
-        int seconds = duration.toSecondsPart();
+    public boolean isStopping() {
+        return !siteIdToTasks.isEmpty() || (pool != null && !pool.isTerminated());
+    }
 
-        log.info("FINISHED in {}:{}:{}", hours, minutes, seconds);
+    public boolean isActive(SiteTasks siteTasks) {
+        return !siteTasks.stopped;
     }
 
-    public void abort() {
-        running = false;
-        tasks.clear();
-        pool.shutdownNow();
+    public void startSites(List<SiteCrawler> roots) {
+        roots.forEach(root -> {
+            SiteTasks siteTasks = new SiteTasks(root, pool);
+            root.setSiteTasks(siteTasks);
+            siteIdToTasks.put(siteTasks.siteId, siteTasks);
+        });
+        roots.forEach(this::submitTask);
+    }
+
+    public void submitTask(SiteCrawler crawler) {
+        SiteTasks siteTasks = crawler.getSiteTasks();
+        if (siteTasks.stopped) return;
+
+        int pending = siteTasks.pending.incrementAndGet();
+        try {
+            siteTasks.pool.execute(crawler);
+        } catch (RejectedExecutionException e) {
+            completeTask(siteTasks);
+            return;
+        }
+        log.info("Task {}{} submitted. Tasks count = {}", crawler.getSite().getUrl(), crawler.getSourcePath(), pending);
+    }
+
+    // runs the rest of a task whose fetch completed off the pool; the task stays pending until then
+    public void continueTask(SiteTasks siteTasks, Runnable continuation) {
+        if (siteTasks.stopped) {
+            completeTask(siteTasks);
+            return;
+        }
+        try {
+            siteTasks.pool.execute(() -> {
+                try {
+                    if (!siteTasks.stopped) continuation.run();
+                } catch (RuntimeException e) {
+                    log.error("Task of site {} failed: {}", siteTasks.siteId, e.getMessage());
+                } finally {
+                    completeTask(siteTasks);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            completeTask(siteTasks);
+        }
     }
 
-    public synchronized ForkJoinTask<Void> submitTask(SiteCrawler crawler) {
-        ForkJoinTask<Void> task = pool.submit(crawler);
-        tasks.add(task);
-        log.info("Task {}{} submitted. Tasks count = {}", crawler.getSite().getUrl(), crawler.getSourcePath(), tasks.size());
-        return task;
+    public void completeTask(SiteTasks siteTasks) {
+        if (siteTasks.pending.decrementAndGet() == 0) {
+            finishSite(siteTasks);
+        }
     }
 
     public void initialize() {
         running = true;
+        start = System.currentTimeMillis();
         int parallelism = Runtime.getRuntime().availableProcessors() * threadMultiplier;
         log.info("ForkJoinPool parallelism = {}", parallelism);
         pool = new ForkJoinPool(parallelism);
     }
 
-    private void checkAndRemoveCompletedTasks() {
-        for (int i = 0; i < tasks.size(); i++) {
-            ForkJoinTask<Void> task = tasks.get(i);
-            if (task != null && task.isDone()) {
-                tasks.remove(task);
+    private void finishSite(SiteTasks siteTasks) {
+        if (!siteTasks.finished.compareAndSet(false, true)) return;
+
+        int siteId = siteTasks.siteId;
+        siteTasks.root.finish(finisher, siteTasks.stopped).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Finishing site {} failed: {}", siteId, e.getMessage());
             }
+            if (siteIdToTasks.remove(siteId, siteTasks) && siteIdToTasks.isEmpty()) {
+                finishAll();
+            }
+        });
+    }
+
+    private void finishAll() {
+        running = false;
+        pool.shutdown();
+
+        Duration duration = Duration.ofMillis(System.currentTimeMillis() - start);
+        int hours = duration.toHoursPart();
+        int minutes = duration.toMinutesPart();
+        int seconds = duration.toSecondsPart();
+
+        log.info("FINISHED in {}:{}:{}", hours, minutes, seconds);
+    }
+
+    static class SiteTasks {
+        private final int siteId;
+        private final SiteCrawler root;
+        private final ForkJoinPool pool;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile boolean stopped;
+
+        private SiteTasks(SiteCrawler root, ForkJoinPool pool) {
+            this.siteId = root.getSite().getId();
+            this.root = root;
+            this.pool = pool;
         }
     }
 }
@@ -0,0 +1,24 @@
+package searchengine.utils;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.dto.search.SearchQuery;
+
+@Component
+@ConditionalOnProperty(name = "search-settings.scorer", havingValue = "legacy")
+public class LegacyScorer implements RelevanceScorer {
+    @Override
+    public TermScorer forTerm(SearchQuery query, IndexShard shard, PostingList postings, int documentFrequency) {
+        return new TermScorer() {
+            @Override
+            public double score(int position) {
+                return postings.getRank(position);
+            }
+
+            @Override
+            public double upperBound() {
+                return postings.getMaxRank();
+            }
+        };
+    }
+}
@@ -0,0 +1,167 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.dao.LemmaDao;
+import searchengine.dto.indexing.LemmaDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionary {
+    private static final int ENTRY_OVERHEAD_BYTES = 88;
+
+    @Value("${indexing-settings.lemma_cache_mb}")
+    private long memoryMb;
+
+    private final Map<Integer, SiteLemmas> siteIdToLemmas = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final LemmaDao lemmaDao;
+
+    public Map<String, Integer> resolveOrCreate(int siteId, Collection<String> lemmas) {
+        SiteLemmas siteLemmas = getOrLoad(siteId);
+
+        Map<String, Integer> lemmaToId = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String lemma : lemmas) {
+            Integer id = siteLemmas.lemmaToId.get(lemma);
+            if (id == null) {
+                missing.add(lemma);
+            } else {
+                lemmaToId.put(lemma, id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            lemmaDao.insertMissing(missing, siteId);
+            List<LemmaDto> found = lemmaDao.findAllByLemmaAndSiteId(missing, siteId);
+            found.forEach(lemma -> lemmaToId.put(lemma.getLemma(), lemma.getId()));
+            putAll(siteId, found);
+        }
+        return lemmaToId;
+    }
+
+    public void putAll(int siteId, Collection<LemmaDto> lemmas) {
+        SiteLemmas siteLemmas = getOrLoad(siteId);
+        for (LemmaDto lemma : lemmas) {
+            if (lemma.getId() != null) {
+                siteLemmas.put(lemma.getLemma(), lemma.getId());
+            }
+        }
+    }
+
+    public void removeAll(int siteId, Collection<String> lemmas) {
+        SiteLemmas siteLemmas = siteIdToLemmas.get(siteId);
+        if (siteLemmas == null) return;
+
+        for (String lemma : lemmas) {
+            if (siteLemmas.lemmaToId.remove(lemma) != null) {
+                long entryBytes = ENTRY_OVERHEAD_BYTES + 2L * lemma.length();
+                siteLemmas.bytes.addAndGet(-entryBytes);
+                totalBytes.addAndGet(-entryBytes);
+            }
+        }
+    }
+
+    public void removeSite(int siteId) {
+        SiteLemmas siteLemmas = siteIdToLemmas.remove(siteId);
+        if (siteLemmas != null) {
+            totalBytes.addAndGet(-siteLemmas.bytes.get());
+        }
+    }
+
+    public long getSiteBytes(int siteId) {
+        SiteLemmas siteLemmas = siteIdToLemmas.get(siteId);
+        return siteLemmas == null ? 0 : siteLemmas.bytes.get();
+    }
+
+    private SiteLemmas getOrLoad(int siteId) {
+        SiteLemmas siteLemmas = siteIdToLemmas.get(siteId);
+        if (siteLemmas != null) return siteLemmas;
+
+        synchronized (siteIdToLemmas) {
+            siteLemmas = siteIdToLemmas.get(siteId);
+            if (siteLemmas != null) return siteLemmas;
+
+            SiteLemmas loadedLemmas = new SiteLemmas(siteId);
+            siteIdToLemmas.put(siteId, loadedLemmas);
+            lemmaDao.forEachLemmaOfSite(siteId, rs -> loadedLemmas.put(rs.getString("lemma"), rs.getInt("id")));
+            log.info("Lemma dictionary for site {} loaded: {} lemmas, {} bytes",
+                    siteId, loadedLemmas.lemmaToId.size(), loadedLemmas.bytes.get());
+            return loadedLemmas;
+        }
+    }
+
+    // a site past its share of the budget stops caching new lemmas and resolves them through the database;
+    // room for a site under its share is made by dropping single entries of the site furthest over it
+    private boolean reserve(SiteLemmas siteLemmas, long bytes) {
+        long limit = memoryMb * 1024 * 1024;
+        long share = limit / Math.max(1, siteIdToLemmas.size());
+        if (totalBytes.get() + bytes <= limit) {
+            totalBytes.addAndGet(bytes);
+            return true;
+        }
+        if (siteLemmas.bytes.get() + bytes > share) return false;
+
+        while (totalBytes.get() + bytes > limit) {
+            SiteLemmas largest = null;
+            for (SiteLemmas candidate : siteIdToLemmas.values()) {
+                if (candidate != siteLemmas && (largest == null || candidate.bytes.get() > largest.bytes.get())) {
+                    largest = candidate;
+                }
+            }
+            if (largest == null || largest.bytes.get() <= share || !largest.evictOne()) return false;
+        }
+        totalBytes.addAndGet(bytes);
+        return true;
+    }
+
+    private class SiteLemmas {
+        private final int siteId;
+        private final Map<String, Integer> lemmaToId = new ConcurrentHashMap<>();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private SiteLemmas(int siteId) {
+            this.siteId = siteId;
+        }
+
+        private void put(String lemma, int id) {
+            if (lemmaToId.containsKey(lemma) || siteIdToLemmas.get(siteId) != this) return;
+
+            long entryBytes = ENTRY_OVERHEAD_BYTES + 2L * lemma.length();
+            if (!reserve(this, entryBytes)) return;
+
+            if (lemmaToId.putIfAbsent(lemma, id) == null) {
+                bytes.addAndGet(entryBytes);
+            } else {
+                totalBytes.addAndGet(-entryBytes);
+            }
+        }
+
+        private boolean evictOne() {
+            Iterator<String> lemmas = lemmaToId.keySet().iterator();
+            while (lemmas.hasNext()) {
+                String lemma = lemmas.next();
+                if (lemmaToId.remove(lemma) != null) {
+                    long entryBytes = ENTRY_OVERHEAD_BYTES + 2L * lemma.length();
+                    bytes.addAndGet(-entryBytes);
+                    totalBytes.addAndGet(-entryBytes);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
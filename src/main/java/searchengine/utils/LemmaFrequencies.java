@@ -0,0 +1,125 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.dao.LemmaDao;
+import searchengine.dto.indexing.LemmaDto;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaFrequencies {
+    @Value("${indexing-settings.lemma_flush_interval_ms}")
+    private long flushIntervalMs;
+
+    private final Map<Integer, Map<String, LongAdder>> siteIdToDeltas = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    private final LemmaDao lemmaDao;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    public void add(int siteId, Map<String, Integer> lemmaDeltas) {
+        Map<String, LongAdder> deltas = siteIdToDeltas.computeIfAbsent(siteId, id -> new ConcurrentHashMap<>());
+        lemmaDeltas.forEach((lemma, delta) -> deltas.computeIfAbsent(lemma, key -> new LongAdder()).add(delta));
+    }
+
+    public void removeSite(int siteId) {
+        siteIdToDeltas.remove(siteId);
+    }
+
+    public synchronized void flush() {
+        long start = System.currentTimeMillis();
+        int flushed = 0;
+        RuntimeException failure = null;
+        for (int siteId : siteIdToDeltas.keySet()) {
+            try {
+                flushed += flushSite(siteId);
+            } catch (RuntimeException e) {
+                log.error("Lemma frequency flush for site {} failed: {}", siteId, e.getMessage());
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (flushed > 0) {
+            log.info("LEMMAS flushed {} frequency deltas in {} ms", flushed, System.currentTimeMillis() - start);
+        }
+        if (failure != null) throw failure;
+    }
+
+    public synchronized void flush(int siteId) {
+        long start = System.currentTimeMillis();
+        int flushed = flushSite(siteId);
+        if (flushed > 0) {
+            log.info("LEMMAS flushed {} frequency deltas of site {} in {} ms",
+                    flushed, siteId, System.currentTimeMillis() - start);
+        }
+    }
+
+    private int flushSite(int siteId) {
+        Map<String, LongAdder> deltas = siteIdToDeltas.get(siteId);
+        if (deltas == null) return 0;
+
+        List<LemmaDto> lemmas = new ArrayList<>();
+        deltas.forEach((lemma, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta == 0) return;
+
+            LemmaDto lemmaDto = new LemmaDto();
+            lemmaDto.setLemma(lemma);
+            lemmaDto.setSiteId(siteId);
+            lemmaDto.setFrequency((int) delta);
+            lemmas.add(lemmaDto);
+        });
+        if (lemmas.isEmpty()) return 0;
+
+        try {
+            lemmaDao.addFrequencies(lemmas);
+        } catch (RuntimeException e) {
+            // deltas of a site removed in the meantime are dropped, its lemmas are gone or about to be
+            siteIdToDeltas.computeIfPresent(siteId, (id, current) -> {
+                if (current == deltas) {
+                    lemmas.forEach(lemma -> deltas.computeIfAbsent(lemma.getLemma(), key -> new LongAdder())
+                            .add(lemma.getFrequency()));
+                }
+                return current;
+            });
+            throw e;
+        }
+        return lemmas.size();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Lemma frequency flush failed: {}", e.getMessage());
+        }
+    }
+}
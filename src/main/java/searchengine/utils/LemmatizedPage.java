@@ -0,0 +1,14 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import searchengine.dto.indexing.PageDto;
+
+import java.util.Map;
+
+@Getter
+@RequiredArgsConstructor
+public class LemmatizedPage {
+    private final PageDto page;
+    private final Map<String, TermPositions> lemmaPositionsMap;
+}
@@ -11,10 +11,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Component
 public class Lemmatizer {
+    private static final Pattern WORD_PATTERN = Pattern.compile("[A-Za-z'А-Яа-яЁё]+");
+
     private RussianLuceneMorphology russianMorph;
     private EnglishLuceneMorphology englishMorph;
 
@@ -82,14 +86,24 @@ public class Lemmatizer {
         englishMorph = new EnglishLuceneMorphology();
     }
 
-    public Map<String, List<String>> buildWordLemmasMap(String text) {
-        Map<String, List<String>> wordLemmasMap = new HashMap<>();
-        List<String> words = splitToWords(text);
-        for (String word : words) {
+    public Map<String, TermPositions> buildLemmaPositionsMap(String text) {
+        Map<String, TermPositions> lemmaPositionsMap = new HashMap<>();
+        Matcher matcher = WORD_PATTERN.matcher(text);
+        int position = 0;
+        while (matcher.find()) {
+            String word = matcher.group();
+            if (word.length() < 2 || word.contains("'")) continue;
+
             List<String> normalForms = filterAndGetNormalForms(word);
-            if (normalForms != null) wordLemmasMap.put(word, normalForms);
+            if (normalForms != null) {
+                for (String lemma : normalForms) {
+                    lemmaPositionsMap.computeIfAbsent(lemma, l -> new TermPositions())
+                            .add(position, matcher.start(), word.length());
+                }
+            }
+            position++;
         }
-        return wordLemmasMap;
+        return lemmaPositionsMap;
     }
 
     private List<String> splitToWords(String text) {
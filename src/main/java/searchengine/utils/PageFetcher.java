@@ -0,0 +1,169 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import searchengine.config.AgentsList;
+import searchengine.dto.indexing.PageDto;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageFetcher {
+    private static final Pattern CHARSET_PATTERN = Pattern.compile("charset=\"?([\\w-]+)", Pattern.CASE_INSENSITIVE);
+
+    @Value("${indexing-settings.fetch_rate_per_host}")
+    private double ratePerHost;
+
+    @Value("${indexing-settings.fetch_burst}")
+    private double burst;
+
+    @Value("${indexing-settings.fetch_timeout_ms}")
+    private long timeoutMs;
+
+    private HttpClient client;
+    private HostRateLimiter rateLimiter;
+    private final Random random = new Random();
+
+    private final AgentsList agentsList;
+
+    @PostConstruct
+    public void start() {
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+        rateLimiter = new HostRateLimiter(ratePerHost, burst);
+    }
+
+    public ResponseEntity<String> fetch(String url) throws IOException, InterruptedException {
+        return fetch(url, null);
+    }
+
+    public ResponseEntity<String> fetch(String url, PageDto knownPage) throws IOException, InterruptedException {
+        try {
+            return fetchAsync(url, knownPage, () -> true).get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    // the host's token bucket is waited out on a timer and the request itself is sent asynchronously,
+    // so no thread is held while a throttled host or the network is slow; a request whose crawl became
+    // inactive during the wait is cancelled instead of being sent
+    public CompletableFuture<ResponseEntity<String>> fetchAsync(String url, PageDto knownPage, BooleanSupplier active) {
+        URI uri = URI.create(url);
+        long delay = rateLimiter.reserve(uri.getHost());
+        HttpRequest request = buildRequest(uri, knownPage);
+        if (delay == 0) {
+            return send(url, request);
+        }
+        return CompletableFuture.supplyAsync(() -> request, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS))
+                .thenCompose(ready -> {
+                    if (!active.getAsBoolean()) throw new CancellationException("Fetch of " + url + " cancelled");
+                    return send(url, ready);
+                });
+    }
+
+    public static IOException unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException ioException ? ioException : new IOException(cause);
+    }
+
+    private CompletableFuture<ResponseEntity<String>> send(String url, HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    try {
+                        return toResponseEntity(url, response);
+                    } catch (IOException e) {
+                        throw new CompletionException(new UncheckedIOException(e));
+                    }
+                });
+    }
+
+    private HttpRequest buildRequest(URI uri, PageDto knownPage) {
+        List<String> agents = agentsList.getAgents();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header(HttpHeaders.USER_AGENT, agents.get(random.nextInt(agents.size())))
+                .header(HttpHeaders.REFERER, "http://www.google.com")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .GET();
+        if (knownPage != null && knownPage.getEtag() != null) {
+            builder.header(HttpHeaders.IF_NONE_MATCH, knownPage.getEtag());
+        }
+        if (knownPage != null && knownPage.getLastModified() != null) {
+            builder.header(HttpHeaders.IF_MODIFIED_SINCE, knownPage.getLastModified());
+        }
+        return builder.build();
+    }
+
+    private ResponseEntity<String> toResponseEntity(String url, HttpResponse<byte[]> response) throws IOException {
+        int status = response.statusCode();
+        if (status >= 400) {
+            throw new FetchStatusException(status, url);
+        }
+
+        String contentType = response.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(null);
+        if (status != 304 && contentType != null && !contentType.startsWith("text/") && !contentType.contains("xml")) {
+            throw new UnsupportedContentTypeException(contentType, url);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        response.headers().firstValue(HttpHeaders.ETAG).ifPresent(etag -> headers.set(HttpHeaders.ETAG, etag));
+        response.headers().firstValue(HttpHeaders.LAST_MODIFIED)
+                .ifPresent(lastModified -> headers.set(HttpHeaders.LAST_MODIFIED, lastModified));
+
+        boolean gzipped = response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)
+                .map(encoding -> encoding.equalsIgnoreCase("gzip")).orElse(false);
+        return ResponseEntity.status(status).headers(headers).body(decode(response.body(), gzipped, contentType));
+    }
+
+    private String decode(byte[] body, boolean gzipped, String contentType) throws IOException {
+        if (gzipped && body.length > 0) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
+        }
+
+        Charset charset = StandardCharsets.UTF_8;
+        if (contentType != null) {
+            Matcher matcher = CHARSET_PATTERN.matcher(contentType);
+            if (matcher.find() && Charset.isSupported(matcher.group(1))) {
+                charset = Charset.forName(matcher.group(1));
+            }
+        }
+        return new String(body, charset);
+    }
+}
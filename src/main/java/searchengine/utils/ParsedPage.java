@@ -0,0 +1,14 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class ParsedPage {
+    private final String title;
+    private final String text;
+    private final List<String> links;
+}
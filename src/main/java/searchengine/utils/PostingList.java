@@ -0,0 +1,149 @@
+package searchengine.utils;
+
+import java.util.Arrays;
+
+public class PostingList {
+    public static final PostingList EMPTY = new PostingList(new int[0], new float[0], 0);
+
+    private final int[] pageIds;
+    private final float[] ranks;
+    private final float maxRank;
+    private final int minLength;
+
+    public PostingList(int[] pageIds, float[] ranks, int minLength) {
+        this.pageIds = pageIds;
+        this.ranks = ranks;
+        this.minLength = minLength;
+
+        float max = 0;
+        for (float rank : ranks) {
+            max = Math.max(max, rank);
+        }
+        this.maxRank = max;
+    }
+
+    public int size() {
+        return pageIds.length;
+    }
+
+    public boolean isEmpty() {
+        return pageIds.length == 0;
+    }
+
+    public int getPageId(int position) {
+        return pageIds[position];
+    }
+
+    public float getRank(int position) {
+        return ranks[position];
+    }
+
+    public float getMaxRank() {
+        return maxRank;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int indexOf(int pageId) {
+        return Arrays.binarySearch(pageIds, pageId);
+    }
+
+    public int advance(int pageId, int from) {
+        int bound = 1;
+        while (from + bound < pageIds.length && pageIds[from + bound] < pageId) {
+            bound <<= 1;
+        }
+        int low = from + (bound >> 1);
+        int high = Math.min(from + bound, pageIds.length - 1);
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (pageIds[middle] < pageId) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    public PostingList merge(PostingList other) {
+        int[] mergedIds = new int[pageIds.length + other.pageIds.length];
+        float[] mergedRanks = new float[mergedIds.length];
+        int i = 0, j = 0, k = 0;
+        while (i < pageIds.length && j < other.pageIds.length) {
+            if (pageIds[i] < other.pageIds[j]) {
+                mergedIds[k] = pageIds[i];
+                mergedRanks[k++] = ranks[i++];
+            } else {
+                if (pageIds[i] == other.pageIds[j]) i++;
+                mergedIds[k] = other.pageIds[j];
+                mergedRanks[k++] = other.ranks[j++];
+            }
+        }
+        while (i < pageIds.length) {
+            mergedIds[k] = pageIds[i];
+            mergedRanks[k++] = ranks[i++];
+        }
+        while (j < other.pageIds.length) {
+            mergedIds[k] = other.pageIds[j];
+            mergedRanks[k++] = other.ranks[j++];
+        }
+        return new PostingList(Arrays.copyOf(mergedIds, k), Arrays.copyOf(mergedRanks, k),
+                Math.min(minLength, other.minLength));
+    }
+
+    public PostingList removeAll(int[] sortedPageIds) {
+        boolean found = false;
+        for (int pageId : sortedPageIds) {
+            if (indexOf(pageId) >= 0) {
+                found = true;
+                break;
+            }
+        }
+        if (!found) return this;
+
+        int[] keptIds = new int[pageIds.length];
+        float[] keptRanks = new float[pageIds.length];
+        int k = 0;
+        for (int i = 0; i < pageIds.length; i++) {
+            if (Arrays.binarySearch(sortedPageIds, pageIds[i]) < 0) {
+                keptIds[k] = pageIds[i];
+                keptRanks[k++] = ranks[i];
+            }
+        }
+        if (k == pageIds.length) return this;
+        return new PostingList(Arrays.copyOf(keptIds, k), Arrays.copyOf(keptRanks, k), minLength);
+    }
+
+    public static class Builder {
+        private long[] entries = new long[16];
+        private int size;
+        private int minLength = Integer.MAX_VALUE;
+
+        public Builder add(int pageId, float rank, int length) {
+            minLength = Math.min(minLength, length);
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = ((long) pageId << 32) | (Float.floatToRawIntBits(rank) & 0xFFFFFFFFL);
+            return this;
+        }
+
+        public PostingList build() {
+            Arrays.sort(entries, 0, size);
+            int[] pageIds = new int[size];
+            float[] ranks = new float[size];
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                int pageId = (int) (entries[i] >>> 32);
+                if (k > 0 && pageIds[k - 1] == pageId) k--;
+                pageIds[k] = pageId;
+                ranks[k++] = Float.intBitsToFloat((int) entries[i]);
+            }
+            return new PostingList(Arrays.copyOf(pageIds, k), Arrays.copyOf(ranks, k),
+                    size == 0 ? 0 : minLength);
+        }
+    }
+}
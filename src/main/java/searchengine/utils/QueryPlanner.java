@@ -0,0 +1,61 @@
+package searchengine.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.dto.search.QueryPlan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class QueryPlanner {
+    @Value("${search-settings.max_lemma_ratio}")
+    private double maxLemmaRatio;
+
+    public QueryPlan plan(List<String> lemmas, IndexShard shard) {
+        int documents = shard.getDocumentCount();
+        List<String> lemmasByFrequency = lemmas.stream()
+                .sorted(Comparator.comparingInt(lemma -> shard.getPostings(lemma).size()))
+                .toList();
+
+        Map<String, Double> lemmaRatios = new LinkedHashMap<>();
+        List<String> keptLemmas = new ArrayList<>();
+        List<String> droppedLemmas = new ArrayList<>();
+        for (String lemma : lemmasByFrequency) {
+            double ratio = documents == 0 ? 0 : (double) shard.getPostings(lemma).size() / documents;
+            lemmaRatios.put(lemma, ratio);
+            if (ratio > maxLemmaRatio) {
+                droppedLemmas.add(lemma);
+            } else {
+                keptLemmas.add(lemma);
+            }
+        }
+        if (keptLemmas.isEmpty()) {
+            keptLemmas.add(droppedLemmas.remove(0));
+        }
+
+        QueryPlan plan = new QueryPlan();
+        plan.setSiteId(shard.getSiteId());
+        plan.setDocuments(documents);
+        plan.setLemmas(keptLemmas);
+        plan.setDroppedLemmas(droppedLemmas);
+        plan.setLemmaRatios(lemmaRatios);
+        plan.setEstimatedCost(estimateCost(keptLemmas, shard));
+        return plan;
+    }
+
+    private long estimateCost(List<String> lemmasByFrequency, IndexShard shard) {
+        int candidates = shard.getPostings(lemmasByFrequency.get(0)).size();
+        if (candidates == 0) return 0;
+
+        double cost = candidates;
+        for (int j = 1; j < lemmasByFrequency.size(); j++) {
+            int size = shard.getPostings(lemmasByFrequency.get(j)).size();
+            cost += candidates * (Math.log(1 + (double) size / candidates) / Math.log(2));
+        }
+        return Math.round(cost);
+    }
+}
@@ -0,0 +1,13 @@
+package searchengine.utils;
+
+import searchengine.dto.search.SearchQuery;
+
+public interface RelevanceScorer {
+    TermScorer forTerm(SearchQuery query, IndexShard shard, PostingList postings, int documentFrequency);
+
+    interface TermScorer {
+        double score(int position);
+
+        double upperBound();
+    }
+}
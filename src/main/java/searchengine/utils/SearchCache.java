@@ -0,0 +1,127 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.dto.search.SearchResult;
+import searchengine.dto.statistics.CacheStatistics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchCache {
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+    private static final double EVICTION_TARGET = 0.9;
+
+    @Value("${search-settings.cache_memory_mb}")
+    private long memoryBudgetMb;
+
+    @Getter
+    @Value("${search-settings.cache_depth}")
+    private int depth;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>(256);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final SearchIndex searchIndex;
+
+    public String buildKey(List<String> lemmas, String site) {
+        return (site == null ? "*" : site) + "|" + String.join(" ", lemmas.stream().sorted().toList());
+    }
+
+    public SearchResult get(String key, int depth) {
+        long generation = searchIndex.getGeneration();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.generation != generation) {
+            remove(key, entry);
+            entry = null;
+        }
+        if (entry == null || !entry.result.covers(depth)) {
+            misses.increment();
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        hits.increment();
+        return entry.result;
+    }
+
+    public void put(String key, SearchResult result, long generation) {
+        if (generation != searchIndex.getGeneration()) return;
+
+        Entry entry = new Entry(result, generation, estimateSize(key, result));
+        long budgetBytes = memoryBudgetMb * 1024 * 1024;
+        if (entry.sizeBytes > budgetBytes) return;
+
+        Entry previous = entries.put(key, entry);
+        long used = usedBytes.addAndGet(entry.sizeBytes - (previous == null ? 0 : previous.sizeBytes));
+        if (used > budgetBytes) {
+            evict(budgetBytes);
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setHits(hits.sum());
+        statistics.setMisses(misses.sum());
+        statistics.setEvictions(evictions.sum());
+        statistics.setEntries(entries.size());
+        statistics.setBytes(usedBytes.get());
+        return statistics;
+    }
+
+    // approximate LRU: one thread drops the least recently read entries down to EVICTION_TARGET of the budget,
+    // the others keep going instead of queueing behind it
+    private void evict(long budgetBytes) {
+        if (!evictionLock.tryLock()) return;
+        try {
+            if (usedBytes.get() <= budgetBytes) return;
+
+            List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastAccess));
+            long targetBytes = (long) (budgetBytes * EVICTION_TARGET);
+            for (Map.Entry<String, Entry> candidate : candidates) {
+                if (usedBytes.get() <= targetBytes) break;
+                if (remove(candidate.getKey(), candidate.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean remove(String key, Entry entry) {
+        if (!entries.remove(key, entry)) return false;
+        usedBytes.addAndGet(-entry.sizeBytes);
+        return true;
+    }
+
+    private long estimateSize(String key, SearchResult result) {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length() +
+                (long) Integer.BYTES * result.getPageIds().length +
+                (long) Double.BYTES * result.getScores().length;
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final SearchResult result;
+        private final long generation;
+        private final long sizeBytes;
+        private volatile long lastAccess = System.nanoTime();
+    }
+}
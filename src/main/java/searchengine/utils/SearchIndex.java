@@ -0,0 +1,161 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.dao.IndexDao;
+import searchengine.dao.PageDao;
+import searchengine.dao.SiteDao;
+import searchengine.dto.indexing.SiteDto;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchIndex {
+    private final Map<Integer, IndexShard> siteIdToShard = new ConcurrentHashMap<>();
+    private final Set<Integer> hiddenSiteIds = ConcurrentHashMap.newKeySet();
+    // queries read one immutable snapshot, so swapping generations is a single reference write
+    private volatile List<IndexShard> visibleShards = List.of();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final IndexDao indexDao;
+    private final PageDao pageDao;
+    private final SiteDao siteDao;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+
+        Set<Integer> suspendedSiteIds = siteDao.findAllSuspended().stream().map(SiteDto::getId).collect(Collectors.toSet());
+        Set<Integer> inactiveSiteIds = siteDao.findAllInactive().stream().map(SiteDto::getId)
+                .filter(siteId -> !suspendedSiteIds.contains(siteId)).collect(Collectors.toSet());
+        hiddenSiteIds.addAll(suspendedSiteIds);
+        refreshVisibleShards();
+
+        pageDao.forEachIndexedPage(rs -> {
+            int siteId = rs.getInt("site_id");
+            if (inactiveSiteIds.contains(siteId)) return;
+            getOrCreateShard(siteId).putPage(rs.getInt("id"), rs.getInt("length"));
+        });
+
+        Map<Integer, Map<String, PostingList.Builder>> siteIdToBuilders = new HashMap<>();
+        indexDao.forEachPosting(rs -> {
+            int siteId = rs.getInt("site_id");
+            if (inactiveSiteIds.contains(siteId)) return;
+            int pageId = rs.getInt("page_id");
+            siteIdToBuilders.computeIfAbsent(siteId, id -> new HashMap<>())
+                    .computeIfAbsent(rs.getString("lemma"), lemma -> new PostingList.Builder())
+                    .add(pageId, rs.getFloat("rank"), getOrCreateShard(siteId).getLength(pageId));
+        });
+        siteIdToBuilders.forEach((siteId, lemmaToBuilder) -> getOrCreateShard(siteId).addPostings(lemmaToBuilder));
+
+        generation.incrementAndGet();
+
+        log.info("Search index loaded: {} shards, {} pages in {} ms", siteIdToShard.size(),
+                getDocumentCount(), System.currentTimeMillis() - start);
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public long nextGeneration() {
+        return generation.incrementAndGet();
+    }
+
+    public List<IndexShard> getShards() {
+        return visibleShards;
+    }
+
+    public int getDocumentCount() {
+        return getDocumentCount(getShards());
+    }
+
+    public static int getDocumentCount(List<IndexShard> shards) {
+        return shards.stream().mapToInt(IndexShard::getDocumentCount).sum();
+    }
+
+    public static double getAverageLength(List<IndexShard> shards) {
+        long totalLength = 0;
+        int documents = 0;
+        for (IndexShard shard : shards) {
+            totalLength += shard.getTotalLength();
+            documents += shard.getDocumentCount();
+        }
+        return documents == 0 ? 1 : Math.max(1, (double) totalLength / documents);
+    }
+
+    public static int getDocumentFrequency(List<IndexShard> shards, String lemma) {
+        return shards.stream().mapToInt(shard -> shard.getPostings(lemma).size()).sum();
+    }
+
+    public void addPages(int siteId, Map<Integer, Map<String, Double>> pageIdToLemmaRankMap,
+                         Map<Integer, Integer> pageIdToPageLength) {
+        getOrCreateShard(siteId).addPages(pageIdToLemmaRankMap, pageIdToPageLength);
+        if (!hiddenSiteIds.contains(siteId)) {
+            generation.incrementAndGet();
+        }
+    }
+
+    public void removePages(int siteId, Collection<Integer> pageIds, Collection<String> lemmas) {
+        IndexShard shard = siteIdToShard.get(siteId);
+        if (shard == null || pageIds.isEmpty()) return;
+
+        shard.removePages(pageIds, lemmas);
+        generation.incrementAndGet();
+    }
+
+    public synchronized void hideSite(int siteId) {
+        hiddenSiteIds.add(siteId);
+        refreshVisibleShards();
+    }
+
+    public synchronized void publishSite(int siteId, Integer previousSiteId) {
+        hiddenSiteIds.remove(siteId);
+        if (previousSiteId != null) {
+            siteIdToShard.remove(previousSiteId);
+        }
+        refreshVisibleShards();
+        generation.incrementAndGet();
+    }
+
+    public synchronized void removeSite(int siteId) {
+        hiddenSiteIds.remove(siteId);
+        if (siteIdToShard.remove(siteId) != null) {
+            refreshVisibleShards();
+            generation.incrementAndGet();
+        }
+    }
+
+    private IndexShard getOrCreateShard(int siteId) {
+        IndexShard shard = siteIdToShard.get(siteId);
+        if (shard != null) return shard;
+
+        synchronized (this) {
+            shard = siteIdToShard.get(siteId);
+            if (shard == null) {
+                shard = new IndexShard(siteId);
+                siteIdToShard.put(siteId, shard);
+                refreshVisibleShards();
+            }
+            return shard;
+        }
+    }
+
+    private synchronized void refreshVisibleShards() {
+        visibleShards = siteIdToShard.values().stream()
+                .filter(shard -> !hiddenSiteIds.contains(shard.getSiteId()))
+                .toList();
+    }
+}
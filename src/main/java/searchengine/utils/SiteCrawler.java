@@ -4,21 +4,30 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Scope;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import searchengine.dao.PageDao;
 import searchengine.dao.SiteDao;
+import searchengine.dto.indexing.FrontierDto;
 import searchengine.dto.indexing.PageDto;
 import searchengine.dto.indexing.SiteDto;
 import searchengine.model.Status;
 
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ForkJoinTask;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RecursiveAction;
 
 @Slf4j
@@ -31,100 +40,223 @@ public class SiteCrawler extends RecursiveAction {
 
     private SiteDto site;
     private String sourcePath;
-    private Set<String> visited;
+    private VisitedSet visited;
+    private Map<String, PageDto> knownPages;
+    private List<FrontierDto> resumeEntries;
+    private int depth;
+    private boolean root;
+    private IndexingTasksManager.SiteTasks siteTasks;
+
+    @Value("${indexing-settings.purge_chunk_size}")
+    private int purgeChunkSize;
+
     private final HtmlParser parser;
+    private final PageFetcher fetcher;
     private final ApplicationContext context;
     private final SiteDao siteDao;
     private final IndexingTasksManager tasksManager;
-    private final BatchProcessor batch;
+    private final IndexingPipeline pipeline;
+    private final LemmaFrequencies lemmaFrequencies;
+    private final SiteGenerations siteGenerations;
+    private final IndexProcessor indexProcessor;
+    private final PageDao pageDao;
+    private final CrawlFrontier crawlFrontier;
 
     @Override
     protected void compute() {
-        if (!tasksManager.isRunning()) return;
+        if (!tasksManager.isActive(siteTasks)) {
+            tasksManager.completeTask(siteTasks);
+            return;
+        }
 
-        String url = site.getUrl() + sourcePath;
-        ResponseEntity<String> response;
-        try {
-            response = parser.getResponse(url);
-        } catch (Exception e) {
-            log.error(e.getMessage());
-            if (sourcePath.equals("/")) {
-                site.setStatus(Status.FAILED.toString());
-                site.setLastError("Главная страница не доступна");
-                site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
-                site = siteDao.save(site);
-            }
+        if (resumeEntries == null) {
+            fetchPage();
             return;
         }
+        try {
+            resumeEntries.forEach(entry -> submitChild(entry.getPath(), entry.getDepth()));
+            log.info("{} crawl resumed with {} queued pages", site.getName(), resumeEntries.size());
+        } finally {
+            tasksManager.completeTask(siteTasks);
+        }
+    }
 
-        storePage(response);
+    public CompletableFuture<Void> finish(Executor executor, boolean stopped) {
+        // the main page was unavailable and the generation is already discarded
+        if (Status.FAILED.toString().equals(site.getStatus())) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-        List<String> newPaths = extractNewPaths(response.getBody());
+        log.info("{} visited set: {} paths in {} bytes", site.getName(), visited.size(), visited.getBytes());
+        return pipeline.whenSiteDrained(site.getId()).thenRunAsync(() -> {
+            String error = null;
+            try {
+                if (!stopped) {
+                    purgeDeletedPages();
+                }
+                lemmaFrequencies.flush(site.getId());
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+                throw e;
+            } finally {
+                setFinalStatus(stopped, error);
+            }
+        }, executor);
+    }
 
-        List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+    private void fetchPage() {
+        String url = site.getUrl() + sourcePath;
+        PageDto knownPage = knownPages == null ? null : knownPages.get(sourcePath);
+        try {
+            fetcher.fetchAsync(url, knownPage, () -> tasksManager.isActive(siteTasks))
+                    .whenComplete((response, failure) -> tasksManager.continueTask(siteTasks,
+                            () -> crawlPage(knownPage, response, failure)));
+        } catch (RuntimeException e) {
+            tasksManager.continueTask(siteTasks, () -> crawlPage(knownPage, null, e));
+        }
+    }
 
-        for (String path : newPaths) {
-            SiteCrawler crawler = context.getBean(SiteCrawler.class);
-            crawler.setSite(site);
-            crawler.setSourcePath(path);
-            crawler.setVisited(visited);
-            ForkJoinTask<Void> task = tasksManager.submitTask(crawler);
-            tasks.add(task);
+    private void crawlPage(PageDto knownPage, ResponseEntity<String> response, Throwable failure) {
+        if (failure != null) {
+            handleFetchFailure(knownPage, PageFetcher.unwrap(failure));
+            return;
         }
 
-        for (ForkJoinTask<Void> task : tasks) {
-            try {
-                task.join();
-            } catch (Exception e) {
-                log.error(e.getMessage());
-            }
+        String body = response.getStatusCode() == HttpStatus.NOT_MODIFIED
+                ? pageDao.findContentById(knownPage.getId()).orElse("")
+                : response.getBody();
+        ParsedPage parsedPage = parser.parse(body);
+        List<String> newPaths = extractNewPaths(parsedPage.getLinks());
+        crawlFrontier.enqueue(site.getId(), newPaths, depth + 1);
+
+        if (knownPage == null) {
+            storePage(response, parsedPage);
+        } else {
+            knownPages.remove(sourcePath);
+            recrawlPage(knownPage, response, parsedPage);
         }
+        newPaths.forEach(path -> submitChild(path, depth + 1));
+    }
 
-        if (sourcePath.equals("/")) {
-            batch.flush();
-            setFinalStatus();
+    private void handleFetchFailure(PageDto knownPage, IOException e) {
+        log.error(e.getMessage());
+        if (knownPage != null && !isGone(e)) {
+            knownPages.remove(sourcePath);
         }
+        // a stop that cut the main page fetch short leaves a resumable generation, not an unavailable site
+        if (root && tasksManager.isActive(siteTasks) && !isInterruption(e)) {
+            site.setStatus(Status.FAILED.toString());
+            site.setLastError("Главная страница не доступна");
+            site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
+            site = siteDao.save(site);
+            siteGenerations.discard(site);
+        }
+    }
+
+    private void submitChild(String path, int childDepth) {
+        SiteCrawler crawler = context.getBean(SiteCrawler.class);
+        crawler.setSite(site);
+        crawler.setSourcePath(path);
+        crawler.setDepth(childDepth);
+        crawler.setVisited(visited);
+        crawler.setKnownPages(knownPages);
+        crawler.setSiteTasks(siteTasks);
+        tasksManager.submitTask(crawler);
     }
 
-    private void setFinalStatus() {
-        if (tasksManager.isRunning()) {
+    private void setFinalStatus(boolean stopped, String error) {
+        boolean indexed = !stopped && error == null;
+        if (indexed) {
             site.setStatus(Status.INDEXED.toString());
             log.info(site.getName() + " INDEXED");
         } else {
             site.setStatus(Status.FAILED.toString());
-            site.setLastError("Индексация остановлена пользователем");
+            site.setLastError(stopped ? "Индексация остановлена пользователем" : "Ошибка завершения индексации: " + error);
             log.info(site.getName() + " FAILED");
         }
         site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
         siteDao.save(site);
+
+        if (indexed) {
+            siteGenerations.publish(site);
+        } else {
+            siteGenerations.suspend(site);
+        }
+    }
+
+    private void recrawlPage(PageDto knownPage, ResponseEntity<String> response, ParsedPage parsedPage) {
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+            log.info("{} - {} NOT MODIFIED", site.getId(), sourcePath);
+            crawlFrontier.markVisited(site.getId(), sourcePath);
+            return;
+        }
+
+        String contentHash = parser.getContentHash(response.getBody());
+        if (!contentHash.equals(knownPage.getContentHash())) {
+            indexProcessor.unindex(site.getId(), List.of(knownPage.getId()));
+            storePage(response, parsedPage);
+            return;
+        }
+
+        String etag = response.getHeaders().getETag();
+        String lastModified = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+        if (!Objects.equals(etag, knownPage.getEtag()) || !Objects.equals(lastModified, knownPage.getLastModified())) {
+            knownPage.setEtag(etag);
+            knownPage.setLastModified(lastModified);
+            pageDao.updateValidators(knownPage);
+        }
+        crawlFrontier.markVisited(site.getId(), sourcePath);
+        log.info("{} - {} UNCHANGED", site.getId(), sourcePath);
+    }
+
+    private void purgeDeletedPages() {
+        if (knownPages == null) return;
+
+        List<Integer> pageIds = knownPages.values().stream().map(PageDto::getId).toList();
+        for (int from = 0; from < pageIds.size(); from += purgeChunkSize) {
+            indexProcessor.unindex(site.getId(), pageIds.subList(from, Math.min(from + purgeChunkSize, pageIds.size())));
+        }
+        knownPages.clear();
+        log.info("{} - {} deleted pages purged", site.getName(), pageIds.size());
+    }
+
+    private boolean isGone(IOException e) {
+        return e instanceof FetchStatusException statusException
+                && (statusException.getStatusCode() == HttpStatus.NOT_FOUND.value()
+                || statusException.getStatusCode() == HttpStatus.GONE.value());
     }
 
-    private List<String> extractNewPaths(String body) {
-        List<String> links = parser.getLinks(body);
+    private boolean isInterruption(IOException e) {
+        return e.getCause() instanceof InterruptedException || e.getCause() instanceof CancellationException;
+    }
 
+    private List<String> extractNewPaths(List<String> links) {
         List<String> newPaths = new ArrayList<>();
 
         for (String link : links) {
             String path = convertToPath(link);
 
-            synchronized (visited) {
-                if (path != null && visited.add(path))
-                    newPaths.add(path);
-            }
+            if (path != null && visited.add(path))
+                newPaths.add(path);
         }
 
         return newPaths;
     }
 
-    private void storePage(ResponseEntity<String> response) {
+    private void storePage(ResponseEntity<String> response, ParsedPage parsedPage) {
         PageDto page = new PageDto();
 
         page.setSiteId(site.getId());
         page.setPath(sourcePath);
         page.setCode(response.getStatusCodeValue());
         page.setContent(response.getBody());
+        page.setTitle(parsedPage.getTitle());
+        page.setText(parsedPage.getText());
+        page.setEtag(response.getHeaders().getETag());
+        page.setLastModified(response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED));
+        page.setContentHash(parser.getContentHash(response.getBody()));
 
-        batch.add(page);
+        pipeline.submit(page);
     }
 
     private String convertToPath(String link) {
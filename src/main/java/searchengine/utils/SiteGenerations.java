@@ -0,0 +1,133 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.SiteConfig;
+import searchengine.dao.SiteDao;
+import searchengine.dto.indexing.SiteDto;
+import searchengine.model.Status;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteGenerations {
+    private final SiteDao siteDao;
+    private final SearchIndex searchIndex;
+    private final SitePurger sitePurger;
+    private final LemmaDictionary lemmaDictionary;
+    private final LemmaFrequencies lemmaFrequencies;
+    private final CrawlFrontier crawlFrontier;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void markInterrupted() {
+        siteDao.findAllByStatus(Status.INDEXING).forEach(site -> {
+            site.setStatus(Status.FAILED.toString());
+            site.setLastError("Индексация прервана");
+            site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
+            siteDao.save(site);
+        });
+    }
+
+    public SiteDto createGeneration(SiteConfig siteConfig) {
+        boolean serving = siteDao.findByUrl(siteConfig.getUrl()).isPresent();
+
+        SiteDto site = new SiteDto();
+        site.setName(siteConfig.getName());
+        site.setUrl(siteConfig.getUrl());
+        site.setStatus(Status.INDEXING.toString());
+        site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
+        site.setActive(!serving);
+        site = siteDao.save(site);
+
+        if (serving) {
+            searchIndex.hideSite(site.getId());
+            log.info("{} shadow generation {} created", site.getName(), site.getId());
+        }
+        return site;
+    }
+
+    public Optional<SiteDto> findSuspended(String url) {
+        return siteDao.findLatestByUrl(url)
+                .filter(site -> !Status.INDEXED.toString().equals(site.getStatus()))
+                .filter(site -> crawlFrontier.hasEntries(site.getId()));
+    }
+
+    public void discardSuspended(String url) {
+        siteDao.findLatestByUrl(url)
+                .filter(site -> !site.getActive())
+                .ifPresent(site -> {
+                    discardData(site.getId());
+                    log.info("{} suspended generation {} discarded", site.getName(), site.getId());
+                });
+    }
+
+    public SiteDto resume(SiteDto site) {
+        site.setStatus(Status.INDEXING.toString());
+        site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
+        site.setLastError(null);
+        site = siteDao.save(site);
+
+        if (!site.getActive()) {
+            searchIndex.hideSite(site.getId());
+            log.info("{} shadow generation {} resumed", site.getName(), site.getId());
+        }
+        return site;
+    }
+
+    public void suspend(SiteDto site) {
+        crawlFrontier.flush();
+        if (site.getActive()) return;
+
+        copyLastErrorToServingSite(site);
+        log.info("{} shadow generation {} suspended", site.getName(), site.getId());
+    }
+
+    public void publish(SiteDto site) {
+        crawlFrontier.removeSite(site.getId());
+        if (site.getActive()) return;
+
+        Optional<SiteDto> previousSite = siteDao.findByUrl(site.getUrl());
+        siteDao.activate(site);
+        site.setActive(true);
+
+        Integer previousSiteId = previousSite.map(SiteDto::getId).orElse(null);
+        searchIndex.publishSite(site.getId(), previousSiteId);
+        if (previousSiteId != null) {
+            discardData(previousSiteId);
+        }
+        log.info("{} generation {} published, generation {} retired", site.getName(), site.getId(), previousSiteId);
+    }
+
+    public void discard(SiteDto site) {
+        if (site.getActive()) {
+            crawlFrontier.removeSite(site.getId());
+            return;
+        }
+
+        copyLastErrorToServingSite(site);
+        discardData(site.getId());
+        log.info("{} shadow generation {} discarded", site.getName(), site.getId());
+    }
+
+    private void copyLastErrorToServingSite(SiteDto site) {
+        siteDao.findByUrl(site.getUrl()).ifPresent(servingSite -> {
+            servingSite.setLastError(site.getLastError());
+            siteDao.save(servingSite);
+        });
+    }
+
+    private void discardData(int siteId) {
+        crawlFrontier.removeSite(siteId);
+        searchIndex.removeSite(siteId);
+        lemmaFrequencies.removeSite(siteId);
+        lemmaDictionary.removeSite(siteId);
+        sitePurger.purge(siteId);
+    }
+}
@@ -0,0 +1,105 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.dao.IndexDao;
+import searchengine.dao.LemmaDao;
+import searchengine.dao.PageDao;
+import searchengine.dao.SiteDao;
+import searchengine.dto.indexing.SiteDto;
+import searchengine.dto.statistics.PurgeStatistics;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SitePurger {
+    @Value("${indexing-settings.purge_chunk_size}")
+    private int chunkSize;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<Integer, PurgeStatistics> siteIdToProgress = new ConcurrentHashMap<>();
+
+    private final SiteDao siteDao;
+    private final PageDao pageDao;
+    private final IndexDao indexDao;
+    private final LemmaDao lemmaDao;
+    private final LemmaFrequencies lemmaFrequencies;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeAbandoned() {
+        Set<Integer> suspendedSiteIds = siteDao.findAllSuspended().stream().map(SiteDto::getId).collect(Collectors.toSet());
+        siteDao.findAllInactive().stream()
+                .filter(site -> !suspendedSiteIds.contains(site.getId()))
+                .forEach(site -> purge(site.getId()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public void purge(int siteId) {
+        PurgeStatistics progress = new PurgeStatistics();
+        progress.setSiteId(siteId);
+        progress.setStatus("QUEUED");
+        if (siteIdToProgress.putIfAbsent(siteId, progress) != null) return;
+        lemmaFrequencies.removeSite(siteId);
+
+        executor.submit(() -> {
+            try {
+                purgeNow(progress);
+            } catch (Exception e) {
+                log.error("Purge of site {} failed: {}", siteId, e.getMessage());
+            } finally {
+                siteIdToProgress.remove(siteId);
+            }
+        });
+    }
+
+    public List<PurgeStatistics> getStatistics() {
+        return new ArrayList<>(siteIdToProgress.values());
+    }
+
+    private void purgeNow(PurgeStatistics progress) {
+        int siteId = progress.getSiteId();
+        progress.setStatus("RUNNING");
+        progress.setStartTime(System.currentTimeMillis());
+        progress.setTotalPages(pageDao.getSitePagesCount(siteId));
+
+        int lastId = 0;
+        Optional<Integer> upperId;
+        while (!Thread.currentThread().isInterrupted()
+                && (upperId = pageDao.findChunkUpperId(siteId, lastId, chunkSize)).isPresent()) {
+            indexDao.deleteBySiteIdAndPageIdRange(siteId, lastId + 1, upperId.get());
+            int deletedPages = pageDao.deleteBySiteIdAndIdRange(siteId, lastId + 1, upperId.get());
+            progress.setDeletedPages(progress.getDeletedPages() + deletedPages);
+            lastId = upperId.get();
+        }
+
+        int deletedLemmas;
+        do {
+            deletedLemmas = lemmaDao.deleteBySiteId(siteId, chunkSize);
+            progress.setDeletedLemmas(progress.getDeletedLemmas() + deletedLemmas);
+        } while (deletedLemmas > 0 && !Thread.currentThread().isInterrupted());
+        if (Thread.currentThread().isInterrupted()) return;
+
+        siteDao.delete(siteId);
+        log.info("Site {} purged: {} pages, {} lemmas in {} ms", siteId, progress.getDeletedPages(),
+                progress.getDeletedLemmas(), System.currentTimeMillis() - progress.getStartTime());
+    }
+}
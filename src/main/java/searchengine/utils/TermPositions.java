@@ -0,0 +1,86 @@
+package searchengine.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+public class TermPositions {
+    private int[] positions = new int[4];
+    private int[] starts = new int[4];
+    private int[] lengths = new int[4];
+    private int size;
+
+    public void add(int position, int start, int length) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        positions[size] = position;
+        starts[size] = start;
+        lengths[size++] = length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getPosition(int i) {
+        return positions[i];
+    }
+
+    public int getStart(int i) {
+        return starts[i];
+    }
+
+    public int getEnd(int i) {
+        return starts[i] + lengths[i];
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 4 + 1);
+        writeVarInt(out, size);
+        int lastPosition = 0, lastStart = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarInt(out, positions[i] - lastPosition);
+            writeVarInt(out, starts[i] - lastStart);
+            writeVarInt(out, lengths[i]);
+            lastPosition = positions[i];
+            lastStart = starts[i];
+        }
+        return out.toByteArray();
+    }
+
+    public static TermPositions decode(byte[] bytes) {
+        TermPositions termPositions = new TermPositions();
+        if (bytes == null || bytes.length == 0) return termPositions;
+
+        int[] cursor = {0};
+        int count = readVarInt(bytes, cursor);
+        int position = 0, start = 0;
+        for (int i = 0; i < count; i++) {
+            position += readVarInt(bytes, cursor);
+            start += readVarInt(bytes, cursor);
+            termPositions.add(position, start, readVarInt(bytes, cursor));
+        }
+        return termPositions;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] cursor) {
+        int value = 0, shift = 0;
+        byte b;
+        do {
+            b = bytes[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,88 @@
+package searchengine.utils;
+
+import searchengine.dto.search.QueryPlan;
+import searchengine.dto.search.SearchResult;
+
+import java.util.List;
+
+public class TopPages {
+    private final int capacity;
+    private final int[] pageIds;
+    private final double[] scores;
+    private int size;
+
+    public TopPages(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.pageIds = new int[this.capacity];
+        this.scores = new double[this.capacity];
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public double threshold() {
+        return size == 0 ? Double.POSITIVE_INFINITY : scores[0];
+    }
+
+    public void offer(int pageId, double score) {
+        if (size < capacity) {
+            pageIds[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (capacity > 0 && isWorse(pageIds[0], scores[0], pageId, score)) {
+            pageIds[0] = pageId;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    public SearchResult toResult(int count, QueryPlan plan) {
+        int length = size;
+        int[] sortedPageIds = new int[length];
+        double[] sortedScores = new double[length];
+        for (int i = length - 1; i >= 0; i--) {
+            sortedPageIds[i] = pageIds[0];
+            sortedScores[i] = scores[0];
+            size--;
+            pageIds[0] = pageIds[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return new SearchResult(count, sortedPageIds, sortedScores, List.of(plan));
+    }
+
+    public static boolean isWorse(int pageId, double score, int otherPageId, double otherScore) {
+        return score < otherScore || (score == otherScore && pageId > otherPageId);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!isWorse(pageIds[i], scores[i], pageIds[parent], scores[parent])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1, right = left + 1;
+            if (left < size && isWorse(pageIds[left], scores[left], pageIds[worst], scores[worst])) worst = left;
+            if (right < size && isWorse(pageIds[right], scores[right], pageIds[worst], scores[worst])) worst = right;
+            if (worst == i) break;
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int pageId = pageIds[i];
+        pageIds[i] = pageIds[j];
+        pageIds[j] = pageId;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
@@ -0,0 +1,17 @@
+package searchengine.utils;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+@Getter
+public class UnsupportedContentTypeException extends IOException {
+    private final String contentType;
+    private final String url;
+
+    public UnsupportedContentTypeException(String contentType, String url) {
+        super("Unhandled content type. Mimetype=" + contentType + ", URL=[" + url + "]");
+        this.contentType = contentType;
+        this.url = url;
+    }
+}
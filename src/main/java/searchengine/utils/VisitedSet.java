@@ -0,0 +1,155 @@
+package searchengine.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class VisitedSet {
+    private static final int STRIPES = 64;
+    private static final int MIN_STRIPE_CAPACITY = 1024;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final BloomFilter bloomFilter;
+
+    public VisitedSet(int expectedSize, boolean bloomFilterEnabled) {
+        int stripeCapacity = Math.max(MIN_STRIPE_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize / STRIPES)) * 2);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        bloomFilter = bloomFilterEnabled ? new BloomFilter(Math.max(expectedSize, STRIPES * MIN_STRIPE_CAPACITY)) : null;
+    }
+
+    public boolean add(String path) {
+        long fingerprint = fingerprint(path);
+        if (bloomFilter != null && !bloomFilter.mightContain(fingerprint)) {
+            bloomFilter.put(fingerprint);
+            return stripeOf(fingerprint).insert(fingerprint);
+        }
+        Stripe stripe = stripeOf(fingerprint);
+        if (stripe.contains(fingerprint)) return false;
+        if (bloomFilter != null) bloomFilter.put(fingerprint);
+        return stripe.insert(fingerprint);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    public long getBytes() {
+        long bytes = bloomFilter == null ? 0 : bloomFilter.getBytes();
+        for (Stripe stripe : stripes) {
+            bytes += 8L * stripe.slots.length;
+        }
+        return bytes;
+    }
+
+    private Stripe stripeOf(long fingerprint) {
+        return stripes[(int) (fingerprint >>> 58)];
+    }
+
+    static long fingerprint(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash = (hash ^ path.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static class Stripe {
+        private volatile long[] slots;
+        private volatile int size;
+
+        private Stripe(int capacity) {
+            slots = new long[capacity];
+        }
+
+        // lock-free lookup: entries are never removed, so a hit is final and a miss is re-checked under the lock
+        private boolean contains(long fingerprint) {
+            long[] table = slots;
+            int mask = table.length - 1;
+            for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+                long slot = (long) SLOTS.getAcquire(table, i);
+                if (slot == fingerprint) return true;
+                if (slot == 0) return false;
+            }
+        }
+
+        private synchronized boolean insert(long fingerprint) {
+            long[] table = slots;
+            int mask = table.length - 1;
+            int i = (int) fingerprint & mask;
+            for (long slot; (slot = table[i]) != 0; i = (i + 1) & mask) {
+                if (slot == fingerprint) return false;
+            }
+            SLOTS.setRelease(table, i, fingerprint);
+            size++;
+            if (size * 4 > table.length * 3) {
+                slots = resize(table);
+            }
+            return true;
+        }
+
+        private static long[] resize(long[] table) {
+            long[] resized = new long[table.length * 2];
+            int mask = resized.length - 1;
+            for (long fingerprint : table) {
+                if (fingerprint == 0) continue;
+                int i = (int) fingerprint & mask;
+                while (resized[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                resized[i] = fingerprint;
+            }
+            return resized;
+        }
+    }
+
+    private static class BloomFilter {
+        private static final int HASHES = 4;
+
+        private final AtomicLongArray bits;
+        private final long bitMask;
+
+        private BloomFilter(int expectedSize) {
+            long bitCount = Long.highestOneBit((long) expectedSize * 10 - 1) << 1;
+            bits = new AtomicLongArray((int) (bitCount >>> 6));
+            bitMask = bitCount - 1;
+        }
+
+        private boolean mightContain(long fingerprint) {
+            long hash = fingerprint;
+            for (int i = 0; i < HASHES; i++, hash = Long.rotateLeft(hash, 16) * 0x9e3779b97f4a7c15L) {
+                long bit = hash & bitMask;
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        private void put(long fingerprint) {
+            long hash = fingerprint;
+            for (int i = 0; i < HASHES; i++, hash = Long.rotateLeft(hash, 16) * 0x9e3779b97f4a7c15L) {
+                long bit = hash & bitMask;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value;
+                while (((value = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, value, value | mask)) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        private long getBytes() {
+            return 8L * bits.length();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+CREATE TABLE IF NOT EXISTS site (
+    id INT NOT NULL AUTO_INCREMENT,
+    status ENUM('INDEXING', 'INDEXED', 'FAILED'),
+    status_time DATETIME NOT NULL,
+    last_error TEXT,
+    url VARCHAR(255) NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    active BIT(1) NOT NULL DEFAULT 1,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS page (
+    id INT NOT NULL AUTO_INCREMENT,
+    site_id INT NOT NULL,
+    path VARCHAR(255) NOT NULL,
+    code INT NOT NULL,
+    content MEDIUMBLOB NOT NULL,
+    title TEXT,
+    text MEDIUMTEXT,
+    length INT,
+    etag VARCHAR(255),
+    last_modified VARCHAR(64),
+    content_hash CHAR(64),
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_page_path_site (path, site_id),
+    CONSTRAINT fk_page_site FOREIGN KEY (site_id) REFERENCES site (id) ON DELETE CASCADE
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS lemma (
+    id INT NOT NULL AUTO_INCREMENT,
+    site_id INT NOT NULL,
+    lemma VARCHAR(255) NOT NULL,
+    frequency INT NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_lemma_lemma_site (lemma, site_id),
+    KEY idx_lemma_lemma (lemma),
+    CONSTRAINT fk_lemma_site FOREIGN KEY (site_id) REFERENCES site (id) ON DELETE CASCADE
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS `index` (
+    id INT NOT NULL AUTO_INCREMENT,
+    page_id INT NOT NULL,
+    lemma_id INT NOT NULL,
+    `rank` FLOAT NOT NULL,
+    positions MEDIUMBLOB,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_index_page FOREIGN KEY (page_id) REFERENCES page (id),
+    CONSTRAINT fk_index_lemma FOREIGN KEY (lemma_id) REFERENCES lemma (id) ON DELETE CASCADE
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS frontier (
+    id INT NOT NULL AUTO_INCREMENT,
+    site_id INT NOT NULL,
+    path VARCHAR(255) NOT NULL,
+    depth INT NOT NULL,
+    visited BIT(1) NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_frontier_site_path (site_id, path),
+    CONSTRAINT fk_frontier_site FOREIGN KEY (site_id) REFERENCES site (id) ON DELETE CASCADE
+) ENGINE = InnoDB;
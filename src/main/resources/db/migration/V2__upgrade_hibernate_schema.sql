@@ -0,0 +1,22 @@
+-- databases created by hibernate before the migrations keep their tables from V1, so bring them up to date here;
+-- an ADD COLUMN for a column that hibernate already added fails as a duplicate and is skipped
+
+-- sites that existed before generations were introduced are the live ones
+ALTER TABLE site ADD COLUMN active BIT(1) NOT NULL DEFAULT 1;
+ALTER TABLE site MODIFY COLUMN active BIT(1) NOT NULL DEFAULT 1;
+
+ALTER TABLE page ADD COLUMN title TEXT;
+ALTER TABLE page ADD COLUMN text MEDIUMTEXT;
+ALTER TABLE page ADD COLUMN length INT;
+ALTER TABLE page ADD COLUMN etag VARCHAR(255);
+ALTER TABLE page ADD COLUMN last_modified VARCHAR(64);
+ALTER TABLE page ADD COLUMN content_hash CHAR(64);
+
+ALTER TABLE `index` ADD COLUMN positions MEDIUMBLOB;
+
+-- page content was mediumtext with plain html; it is stored as a zlib stream now, and COMPRESS() writes one
+-- behind a 4-byte length prefix
+ALTER TABLE page MODIFY COLUMN content MEDIUMBLOB NOT NULL;
+UPDATE page SET content = SUBSTRING(COMPRESS(content), 5)
+    WHERE content <> '' AND LEFT(content, 2) NOT IN (X'7801', X'785E', X'789C', X'78DA');
+UPDATE page SET content = X'7801030000000001' WHERE content = '';
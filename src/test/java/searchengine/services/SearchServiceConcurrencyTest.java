@@ -0,0 +1,197 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import searchengine.dao.IndexDao;
+import searchengine.dao.PageDao;
+import searchengine.dao.SiteDao;
+import searchengine.dto.indexing.PageDto;
+import searchengine.dto.indexing.SiteDto;
+import searchengine.dto.search.SearchData;
+import searchengine.dto.search.SearchResponse;
+import searchengine.utils.Bm25Scorer;
+import searchengine.utils.Lemmatizer;
+import searchengine.utils.QueryPlanner;
+import searchengine.utils.SearchCache;
+import searchengine.utils.SearchIndex;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchServiceConcurrencyTest {
+    private static final int SITES = 3;
+    private static final int PAGES_PER_SITE = 400;
+    private static final int VOCABULARY = 60;
+    private static final int QUERIES = 300;
+    private static final int THREADS = 32;
+
+    private final Lemmatizer lemmatizer = mock(Lemmatizer.class);
+    private final PageDao pageDao = mock(PageDao.class);
+    private final IndexDao indexDao = mock(IndexDao.class);
+    private final SiteDao siteDao = mock(SiteDao.class);
+    private SearchIndex searchIndex;
+    private final List<SearchServiceImpl> services = new ArrayList<>();
+
+    @BeforeEach
+    void buildIndex() {
+        when(lemmatizer.buildLemmaRankMap(anyString())).thenAnswer(invocation -> {
+            Map<String, Double> lemmas = new HashMap<>();
+            for (String word : invocation.<String>getArgument(0).split(" ")) {
+                lemmas.merge(word, 1.0, Double::sum);
+            }
+            return lemmas;
+        });
+        when(pageDao.findAllSummariesById(anyList())).thenAnswer(invocation -> invocation.<List<Integer>>getArgument(0)
+                .stream().map(SearchServiceConcurrencyTest::buildPage).toList());
+        when(siteDao.findAllById(anyList())).thenAnswer(invocation -> invocation.<List<Integer>>getArgument(0)
+                .stream().map(SearchServiceConcurrencyTest::buildSite).toList());
+        when(indexDao.findPositions(anyList(), anyList())).thenReturn(Map.of());
+
+        searchIndex = new SearchIndex(indexDao, pageDao, siteDao);
+        Random random = new Random(1);
+        for (int siteId = 1; siteId <= SITES; siteId++) {
+            Map<Integer, Map<String, Double>> pageIdToLemmaRankMap = new HashMap<>();
+            Map<Integer, Integer> pageIdToLength = new HashMap<>();
+            for (int page = 0; page < PAGES_PER_SITE; page++) {
+                int pageId = siteId * 10_000 + page;
+                Map<String, Double> lemmaRanks = new HashMap<>();
+                int words = 5 + random.nextInt(15);
+                for (int i = 0; i < words; i++) {
+                    lemmaRanks.merge("w" + zipf(random), 1.0 + random.nextInt(3), Double::sum);
+                }
+                pageIdToLemmaRankMap.put(pageId, lemmaRanks);
+                pageIdToLength.put(pageId, lemmaRanks.values().stream().mapToInt(Double::intValue).sum());
+            }
+            searchIndex.addPages(siteId, pageIdToLemmaRankMap, pageIdToLength);
+        }
+    }
+
+    @AfterEach
+    void stopServices() {
+        services.forEach(service -> ReflectionTestUtils.invokeMethod(service, "preDestroy"));
+    }
+
+    @Test
+    void parallelQueriesReturnTheSameResultsAsSequentialOnes() throws Exception {
+        List<String> queries = buildQueries();
+
+        SearchService sequentialService = buildService();
+        Map<String, List<String>> expected = new HashMap<>();
+        for (String query : queries) {
+            expected.put(query, describe(sequentialService.search(query, null, 0, 10, false)));
+        }
+        assertTrue(expected.values().stream().anyMatch(result -> result.size() > 1));
+
+        SearchService parallelService = buildService();
+        List<String> workload = new ArrayList<>();
+        for (int repeat = 0; repeat < 4; repeat++) {
+            workload.addAll(queries);
+        }
+        Collections.shuffle(workload, new Random(2));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Map.Entry<String, List<String>>>> futures = workload.stream()
+                    .map(query -> executor.submit(() -> {
+                        start.await();
+                        return Map.entry(query, describe(parallelService.search(query, null, 0, 10, false)));
+                    }))
+                    .toList();
+            start.countDown();
+
+            for (Future<Map.Entry<String, List<String>>> future : futures) {
+                Map.Entry<String, List<String>> actual = future.get(30, TimeUnit.SECONDS);
+                assertEquals(expected.get(actual.getKey()), actual.getValue(), actual.getKey());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void prunedQueriesMatchAnUnprunedRun() {
+        SearchService prunedService = buildService();
+        SearchService unprunedService = buildService();
+        for (String query : buildQueries()) {
+            List<String> pruned = describe(prunedService.search(query, null, 0, 10, false));
+            List<String> unpruned = describe(unprunedService.search(query, null, 0, SITES * PAGES_PER_SITE, false));
+            assertEquals(unpruned.subList(0, Math.min(unpruned.size(), 11)), pruned, query);
+        }
+    }
+
+    private SearchService buildService() {
+        SearchCache searchCache = new SearchCache(searchIndex);
+        ReflectionTestUtils.setField(searchCache, "memoryBudgetMb", 1L);
+        ReflectionTestUtils.setField(searchCache, "depth", 50);
+
+        Bm25Scorer scorer = new Bm25Scorer();
+        ReflectionTestUtils.setField(scorer, "k1", 1.2);
+        ReflectionTestUtils.setField(scorer, "b", 0.75);
+
+        QueryPlanner queryPlanner = new QueryPlanner();
+        ReflectionTestUtils.setField(queryPlanner, "maxLemmaRatio", 1.0);
+
+        SearchServiceImpl service = new SearchServiceImpl(lemmatizer, pageDao, indexDao, siteDao, searchIndex,
+                searchCache, scorer, queryPlanner);
+        ReflectionTestUtils.setField(service, "shardThreads", 4);
+        ReflectionTestUtils.invokeMethod(service, "postConstruct");
+        services.add(service);
+        return service;
+    }
+
+    private static List<String> buildQueries() {
+        Random random = new Random(3);
+        Set<String> queries = new LinkedHashSet<>();
+        while (queries.size() < QUERIES) {
+            int words = 1 + random.nextInt(3);
+            Set<String> lemmas = new TreeSet<>();
+            for (int i = 0; i < words; i++) {
+                lemmas.add("w" + zipf(random));
+            }
+            queries.add(String.join(" ", lemmas));
+        }
+        return new ArrayList<>(queries);
+    }
+
+    private static List<String> describe(Object response) {
+        SearchResponse searchResponse = (SearchResponse) response;
+        List<String> description = new ArrayList<>();
+        description.add("count=" + searchResponse.getCount());
+        for (SearchData item : searchResponse.getData()) {
+            description.add(item.getSite() + item.getUri() + "=" + item.getRelevance());
+        }
+        return description;
+    }
+
+    private static int zipf(Random random) {
+        return (int) Math.min(VOCABULARY - 1, Math.floor(Math.pow(VOCABULARY, random.nextDouble())) - 1);
+    }
+
+    private static PageDto buildPage(int pageId) {
+        PageDto page = new PageDto();
+        page.setId(pageId);
+        page.setSiteId(pageId / 10_000);
+        page.setPath("/page-" + pageId);
+        page.setTitle("Page " + pageId);
+        page.setText("");
+        return page;
+    }
+
+    private static SiteDto buildSite(int siteId) {
+        SiteDto site = new SiteDto();
+        site.setId(siteId);
+        site.setUrl("https://site" + siteId + ".test");
+        site.setName("Site " + siteId);
+        return site;
+    }
+}
@@ -0,0 +1,183 @@
+package searchengine.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import searchengine.config.AgentsList;
+import searchengine.dto.indexing.PageDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageFetcherTest {
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer server;
+    private String baseUrl;
+    private final List<Long> arrivals = new CopyOnWriteArrayList<>();
+    private final List<String> acceptEncodings = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/plain", exchange -> respond(exchange, 200, "text/html; charset=utf-8",
+                "<html>plain</html>".getBytes(StandardCharsets.UTF_8), false));
+        server.createContext("/gzip", exchange -> respond(exchange, 200, "text/html; charset=windows-1251",
+                gzip("<html>сжатая страница</html>".getBytes(Charset.forName("windows-1251"))), true));
+        server.createContext("/cached", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst(HttpHeaders.IF_NONE_MATCH))) {
+                exchange.getResponseHeaders().set(HttpHeaders.ETAG, ETAG);
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                exchange.getResponseHeaders().set(HttpHeaders.ETAG, ETAG);
+                respond(exchange, 200, "text/html", "<html>fresh</html>".getBytes(StandardCharsets.UTF_8), false);
+            }
+        });
+        server.createContext("/missing", exchange -> respond(exchange, 404, "text/html", new byte[0], false));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void decodesGzippedBodyWithDeclaredCharset() throws Exception {
+        ResponseEntity<String> response = buildFetcher(100, 10).fetch(baseUrl + "/gzip");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("<html>сжатая страница</html>", response.getBody());
+        assertEquals(List.of("gzip"), acceptEncodings);
+    }
+
+    @Test
+    void revalidatesKnownPageWithItsEtag() throws Exception {
+        PageFetcher fetcher = buildFetcher(100, 10);
+        ResponseEntity<String> fresh = fetcher.fetch(baseUrl + "/cached");
+        assertEquals(HttpStatus.OK, fresh.getStatusCode());
+        assertEquals(ETAG, fresh.getHeaders().getETag());
+
+        PageDto knownPage = new PageDto();
+        knownPage.setEtag(fresh.getHeaders().getETag());
+        ResponseEntity<String> revalidated = fetcher.fetch(baseUrl + "/cached", knownPage);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+        assertEquals("", revalidated.getBody());
+    }
+
+    @Test
+    void throwsFetchStatusExceptionOnClientError() {
+        FetchStatusException e = assertThrows(FetchStatusException.class,
+                () -> buildFetcher(100, 10).fetch(baseUrl + "/missing"));
+        assertEquals(404, e.getStatusCode());
+    }
+
+    @Test
+    void spacesRequestsToOneHostByRate() throws Exception {
+        PageFetcher fetcher = buildFetcher(10, 1);
+        for (int i = 0; i < 6; i++) {
+            fetcher.fetch(baseUrl + "/plain");
+        }
+
+        assertEquals(6, arrivals.size());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(arrivals.get(5) - arrivals.get(0));
+        assertTrue(elapsedMs >= 450, "6 requests at 10/s with burst 1 took only " + elapsedMs + " ms");
+    }
+
+    @Test
+    void throttlesWithoutHoldingTheCallingThread() throws Exception {
+        PageFetcher fetcher = buildFetcher(10, 1);
+        long start = System.nanoTime();
+        List<CompletableFuture<ResponseEntity<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(fetcher.fetchAsync(baseUrl + "/plain", null, () -> true));
+        }
+        long submitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(submitMs < 200, "scheduling 6 throttled fetches blocked for " + submitMs + " ms");
+
+        for (CompletableFuture<ResponseEntity<String>> future : futures) {
+            assertEquals(HttpStatus.OK, future.get(5, TimeUnit.SECONDS).getStatusCode());
+        }
+        assertEquals(6, arrivals.size());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(Collections.max(arrivals) - start);
+        assertTrue(elapsedMs >= 450, "6 requests at 10/s with burst 1 took only " + elapsedMs + " ms");
+    }
+
+    @Test
+    void cancelsDelayedFetchOfInactiveCrawl() {
+        PageFetcher fetcher = buildFetcher(10, 1);
+        AtomicBoolean active = new AtomicBoolean(true);
+        fetcher.fetchAsync(baseUrl + "/plain", null, active::get).join();
+        CompletableFuture<ResponseEntity<String>> delayed = fetcher.fetchAsync(baseUrl + "/plain", null, active::get);
+        active.set(false);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> delayed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, e.getCause());
+        assertEquals(1, arrivals.size());
+    }
+
+    private PageFetcher buildFetcher(double ratePerHost, double burst) {
+        AgentsList agentsList = new AgentsList();
+        agentsList.setAgents(List.of("TestAgent/1.0"));
+
+        PageFetcher fetcher = new PageFetcher(agentsList);
+        ReflectionTestUtils.setField(fetcher, "ratePerHost", ratePerHost);
+        ReflectionTestUtils.setField(fetcher, "burst", burst);
+        ReflectionTestUtils.setField(fetcher, "timeoutMs", 5000L);
+        fetcher.start();
+        return fetcher;
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, byte[] body, boolean gzipped)
+            throws IOException {
+        arrivals.add(System.nanoTime());
+        String acceptEncoding = exchange.getRequestHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null) {
+            acceptEncodings.add(acceptEncoding);
+        }
+
+        exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, contentType);
+        if (gzipped) {
+            exchange.getResponseHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}